@@ -0,0 +1,120 @@
+package frc.robot.utils.PathPlanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the individual passes of trajectory generation for a path: sampling the splines, the
+ * velocity passes, and joining the sections of a path with reversals.
+ *
+ * <p>The velocity passes and joinPaths update their inputs in place, so their inputs are held in
+ * separate states that are rebuilt before every call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerateBenchmark {
+    @Param({"RightL", "Cargo2ToTerminal", "TerminalToScore", "AutoB", "ToStrategicCargo", "Straight"})
+    public String path;
+
+    private ArrayList<ArrayList<PathPlannerTrajectory2.Waypoint>> splitPaths;
+    private ArrayList<PathPlannerTrajectory2.Waypoint> waypoints;
+
+    @Setup
+    public void setup() throws Exception {
+        File pathFile = new File(System.getProperty("deployDir", "src/main/deploy"), "pathplanner/" + path + ".path");
+
+        splitPaths = PathPlanner2.splitPath(PathPlanner2.loadWaypoints(pathFile));
+        waypoints = splitPaths.get(0);
+    }
+
+    /**
+     * The sampled states of the first section, as calculateMaxVel gets them.
+     */
+    @State(Scope.Thread)
+    public static class Samples {
+        private ArrayList<PathPlannerTrajectory2.PathPlannerState> states;
+
+        @Setup(Level.Invocation)
+        public void setup(GenerateBenchmark benchmark){
+            states = PathPlannerTrajectory2.joinSplines(benchmark.waypoints, 3, PathPlanner2.minStepLength);
+        }
+    }
+
+    /**
+     * The sampled states of the first section with their curvature limits applied, as
+     * calculateVelocity gets them.
+     */
+    @State(Scope.Thread)
+    public static class LimitedSamples {
+        private ArrayList<PathPlannerTrajectory2.PathPlannerState> states;
+
+        @Setup(Level.Invocation)
+        public void setup(GenerateBenchmark benchmark){
+            states = PathPlannerTrajectory2.joinSplines(benchmark.waypoints, 3, PathPlanner2.minStepLength);
+            PathPlannerTrajectory2.calculateMaxVel(states, 3, 2, false);
+        }
+    }
+
+    /**
+     * The generated trajectories of the sections of the path, as joinPaths gets them.
+     */
+    @State(Scope.Thread)
+    public static class Sections {
+        private ArrayList<PathPlannerTrajectory2> paths;
+
+        @Setup(Level.Invocation)
+        public void setup(GenerateBenchmark benchmark){
+            paths = new ArrayList<>();
+            boolean reversed = false;
+            for(ArrayList<PathPlannerTrajectory2.Waypoint> section : benchmark.splitPaths){
+                paths.add(new PathPlannerTrajectory2(section, 3, 2, reversed));
+                reversed = !reversed;
+            }
+        }
+    }
+
+    @Benchmark
+    public PathPlannerTrajectory2 generatePath(){
+        return PathPlanner2.generatePath(splitPaths, 3, 2, false);
+    }
+
+    @Benchmark
+    public ArrayList<PathPlannerTrajectory2.PathPlannerState> joinSplines(){
+        return PathPlannerTrajectory2.joinSplines(waypoints, 3, PathPlanner2.minStepLength);
+    }
+
+    @Benchmark
+    public ArrayList<PathPlannerTrajectory2.PathPlannerState> calculateMaxVel(Samples samples){
+        PathPlannerTrajectory2.calculateMaxVel(samples.states, 3, 2, false);
+        return samples.states;
+    }
+
+    @Benchmark
+    public ArrayList<PathPlannerTrajectory2.PathPlannerState> calculateVelocity(LimitedSamples samples){
+        PathPlannerTrajectory2.calculateVelocity(samples.states, waypoints, 2);
+        return samples.states;
+    }
+
+    @Benchmark
+    public PathPlannerTrajectory2 joinPaths(Sections sections){
+        return PathPlanner2.joinPaths(sections.paths);
+    }
+}
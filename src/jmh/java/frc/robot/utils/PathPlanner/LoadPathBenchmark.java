@@ -0,0 +1,75 @@
+package frc.robot.utils.PathPlanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures loading every path in the deploy directory, both by generating it from the path file
+ * and by reading it from the precompiled trajectory cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadPathBenchmark {
+    @Param({"AutoB", "BackUpStrategic", "BackUpTerminal", "BackUpTerminalToScore", "Cargo1toHubL",
+            "Cargo1toHubLForLeftM", "Cargo2ToTerminal", "Cargo2toHubR", "Cargo3toHubR", "LeftLtoCargo1",
+            "LeftMOff", "LeftMtoCargo1", "LeftMtoCargo2", "RightL", "RightLtoCargo2", "RightMtoCargo2",
+            "RightMtoCargo2ForRightR", "RightMtoCargo3", "RightR", "RightROLD", "RightRtoCargo3",
+            "Straight", "TerminalToScore", "ToStrategicCargo", "ToTerminal"})
+    public String path;
+
+    private File deployDir;
+    private File pathFile;
+
+    @Setup
+    public void setup() throws IOException {
+        pathFile = new File(System.getProperty("deployDir", "src/main/deploy"), "pathplanner/" + path + ".path");
+
+        // Build the cache in a scratch deploy directory, so that the real one is left alone
+        deployDir = Files.createTempDirectory("deploy").toFile();
+        File pathCopy = new File(deployDir, "pathplanner/" + path + ".path");
+        pathCopy.getParentFile().mkdirs();
+        Files.copy(pathFile.toPath(), pathCopy.toPath());
+        PathPlanner2.cachePath(deployDir, path, 3, 2, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        // Delete the scratch deploy directory, deepest files first
+        try(Stream<Path> files = Files.walk(deployDir.toPath())){
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public PathPlannerTrajectory2 generate() throws IOException {
+        return PathPlanner2.loadJsonPath(pathFile, 3, 2, false);
+    }
+
+    @Benchmark
+    public PathPlannerTrajectory2 loadPath(){
+        return PathPlanner2.loadPath(deployDir, path, 3, 2, false);
+    }
+}
@@ -0,0 +1,78 @@
+package frc.robot.utils.PathPlanner;
+
+import edu.wpi.first.math.trajectory.Trajectory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares sampling a path the way FollowTrajectory does (stepping forward 20ms at a time) using
+ * PathPlannerTrajectory2.sample(), the primitive binary search, and the trajectory cursor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleBenchmark {
+    private static final double loopTime = 0.02;
+
+    @Param({"RightL", "Cargo2ToTerminal", "TerminalToScore", "AutoB", "ToStrategicCargo", "Straight"})
+    public String path;
+
+    private PathPlannerTrajectory2 trajectory;
+    private PrimitiveTrajectory primitive;
+    private TrajectoryCursor cursor;
+    private final PrimitiveTrajectory.MutableState state = new PrimitiveTrajectory.MutableState();
+    private double totalTime;
+    private double time;
+
+    @Setup
+    public void setup(){
+        File deployDir = new File(System.getProperty("deployDir", "src/main/deploy"));
+
+        trajectory = PathPlanner2.loadPath(deployDir, path, 3, 2, false);
+        primitive = trajectory.getPrimitiveTrajectory();
+        cursor = new TrajectoryCursor(primitive);
+        totalTime = trajectory.getTotalTimeSeconds();
+        time = 0;
+    }
+
+    private double nextTime(){
+        time += loopTime;
+        if(time > totalTime){
+            time = 0;
+        }
+        return time;
+    }
+
+    @Benchmark
+    public Trajectory.State sample(){
+        return trajectory.sample(nextTime());
+    }
+
+    @Benchmark
+    public PrimitiveTrajectory.MutableState primitiveSampleInto(){
+        primitive.sampleInto(nextTime(), state);
+        return state;
+    }
+
+    @Benchmark
+    public PrimitiveTrajectory.MutableState cursorSampleInto(){
+        cursor.sampleInto(nextTime(), state);
+        return state;
+    }
+}
@@ -0,0 +1,440 @@
+// Copyright (c) 2022 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot;
+
+import static frc.robot.Constants.Auto.kLength;
+import static frc.robot.Constants.Auto.kPeriod;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.ProcessBuilder.Redirect;
+import java.lang.reflect.Field;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.ConditionalCommand;
+import edu.wpi.first.wpilibj2.command.ParallelCommandGroup;
+import edu.wpi.first.wpilibj2.command.ParallelDeadlineGroup;
+import edu.wpi.first.wpilibj2.command.ParallelRaceGroup;
+import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
+import frc.robot.commands.drive.FollowTrajectory;
+import frc.robot.utils.Trajectories;
+
+/**
+ * Runs the autonomous routines in simulation on the desktop and reports how
+ * long they take, so that the delays and trajectory limits can be tuned
+ * without going out to the field. The scheduler is run against a simulated
+ * clock that is stepped by one robot loop at a time, so a routine runs as
+ * fast as the computer allows instead of in real time.
+ *
+ * <p>For each routine this prints a table of every command that ran (nested
+ * under the group that ran it), with the time it started, the time it took
+ * and, for trajectories, the distance between the robot and the end of the
+ * trajectory when it finished. A summary of the total time of each routine
+ * and the final pose error is printed at the end.
+ *
+ * <p>The hardware used by the robot can only be created once, so each
+ * routine is run in its own JVM. Run this with ./gradlew autoReplay, adding
+ * -Pauto="Auto D" to only run one routine.
+ */
+public final class AutoReplay {
+  //
+  // The prefix of the lines that the JVM running a routine uses to report
+  // results back to the harness.
+  //
+  private static final String kResult = "RESULT\t";
+
+  private AutoReplay() {}
+
+  /**
+   * Runs the autonomous routines.
+   *
+   * @param args are the names of the routines to run; all of them are run if
+   *             none are given.
+   */
+  public static void main(String... args) throws Exception {
+    if((args.length == 1) && args[0].equals("--list")) {
+      list();
+      System.exit(0);
+    }
+    if((args.length == 2) && args[0].equals("--run")) {
+      System.exit(replay(args[1]) ? 0 : 1);
+    }
+
+    List<String> names = new ArrayList<String>(Arrays.asList(args));
+    if(names.isEmpty()) {
+      names.addAll(spawn("--list"));
+    }
+
+    List<String> results = new ArrayList<String>();
+    for(String name : names) {
+      results.addAll(spawn("--run", name));
+    }
+
+    System.out.println();
+    System.out.println(String.format("%-24s %8s %9s", "Routine", "Time",
+                                     "Error"));
+    for(String result : results) {
+      String[] fields = result.split("\t");
+      double error = Double.parseDouble(fields[3]);
+      System.out.println(String.format("%-24s %7.2f%s %9s", fields[0],
+                                       Double.parseDouble(fields[1]),
+                                       fields[2].equals("1") ? " " : "+",
+                                       Double.isNaN(error) ? "" :
+                                         String.format("%.3f", error)));
+    }
+    System.out.println();
+    System.out.println("Times are in seconds and errors in meters; + marks " +
+                       "a routine that did not finish within " + kLength +
+                       " seconds.");
+  }
+
+  /**
+   * Runs this class in a new JVM, echoing its output and collecting the
+   * results that it reports.
+   *
+   * @param args are the arguments to pass to the new JVM.
+   *
+   * @return the results reported by the new JVM.
+   */
+  private static List<String> spawn(String... args)
+      throws IOException, InterruptedException {
+    List<String> command = new ArrayList<String>();
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").
+                toString());
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add("-Djava.library.path=" +
+                System.getProperty("java.library.path"));
+    command.add(AutoReplay.class.getName());
+    command.addAll(Arrays.asList(args));
+
+    Process process = new ProcessBuilder(command).
+      redirectError(Redirect.INHERIT).start();
+
+    List<String> results = new ArrayList<String>();
+    try(BufferedReader reader =
+          new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+      String line;
+      while((line = reader.readLine()) != null) {
+        if(line.startsWith(kResult)) {
+          results.add(line.substring(kResult.length()));
+        } else {
+          System.out.println(line);
+        }
+      }
+    }
+
+    if(process.waitFor() != 0) {
+      System.err.println("Unable to run " + String.join(" ", args));
+    }
+    return results;
+  }
+
+  /**
+   * Reports the names of the autonomous routines.
+   */
+  private static void list() {
+    HAL.initialize(500, 0);
+    Trajectories.register();
+
+    for(String name : new RobotContainer().getAutonomousNames()) {
+      System.out.println(kResult + name);
+    }
+  }
+
+  /**
+   * Runs a single autonomous routine, printing the time taken by each of its
+   * commands and reporting its total time and final pose error.
+   *
+   * @param name is the name of the routine.
+   *
+   * @return <b>true</b> if the routine was run.
+   */
+  private static boolean replay(String name) throws InterruptedException {
+    HAL.initialize(500, 0);
+    SimHooks.pauseTiming();
+    DriverStation.silenceJoystickConnectionWarning(true);
+
+    Trajectories.register();
+    RobotContainer container = new RobotContainer();
+    Command auto = container.getAutonomousCommand(name);
+    if(auto == null) {
+      System.err.println("There is no autonomous routine named " + name);
+      return false;
+    }
+
+    // Commands are cancelled while the robot is disabled, so wait for the
+    // enabled state to reach the driver station data before starting.
+    DriverStationSim.setAutonomous(true);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+    for(int i = 0; !DriverStation.isAutonomousEnabled(); i++) {
+      if(i == 1000) {
+        System.err.println("Unable to enable the simulated robot");
+        return false;
+      }
+      Thread.sleep(1);
+    }
+
+    // Start the routine in the same order as Robot.autonomousInit().
+    CommandScheduler scheduler = CommandScheduler.getInstance();
+    Node root = new Node(auto);
+    auto.schedule();
+    container.resetRobot();
+    container.resetLights();
+
+    double start = Timer.getFPGATimestamp();
+    double time = 0;
+    root.sample(true, time);
+    while(true) {
+      scheduler.run();
+      time = Timer.getFPGATimestamp() - start;
+      root.sample(scheduler.isScheduled(auto), time);
+
+      if(!scheduler.isScheduled(auto) || (time >= kLength)) {
+        break;
+      }
+      SimHooks.stepTiming(kPeriod);
+    }
+
+    boolean finished = !scheduler.isScheduled(auto);
+    if(!finished) {
+      root.cutOff();
+      root.sample(false, time);
+    }
+
+    // The final pose error is that of the last trajectory to finish.
+    List<Node> nodes = new ArrayList<Node>();
+    root.collect(nodes);
+    double error = Double.NaN;
+    double last = Double.NEGATIVE_INFINITY;
+    for(Node node : nodes) {
+      if(!Double.isNaN(node.m_error) && (node.m_start > last)) {
+        error = node.m_error;
+        last = node.m_start;
+      }
+    }
+
+    System.out.println();
+    System.out.println(name);
+    System.out.println(String.format("%-56s %8s %8s %9s", "Command", "Start",
+                                     "Time", "Error"));
+    root.print(0);
+
+    System.out.println(kResult + name + "\t" + time + "\t" +
+                       (finished ? "1" : "0") + "\t" + error);
+    return true;
+  }
+
+  /**
+   * Gets the commands run by a command group.
+   *
+   * @param command is the command.
+   *
+   * @return the commands run by the group, or an empty list if the command is
+   *         not a group.
+   */
+  private static List<Command> children(Command command) {
+    if(command instanceof SequentialCommandGroup) {
+      List<Command> commands = field(command, "m_commands");
+      return new ArrayList<Command>(commands);
+    }
+    if((command instanceof ParallelCommandGroup) ||
+       (command instanceof ParallelDeadlineGroup)) {
+      Map<Command, Boolean> commands = field(command, "m_commands");
+      return new ArrayList<Command>(commands.keySet());
+    }
+    if(command instanceof ParallelRaceGroup) {
+      Set<Command> commands = field(command, "m_commands");
+      return new ArrayList<Command>(commands);
+    }
+    if(command instanceof ConditionalCommand) {
+      return Arrays.asList(field(command, "m_onTrue"),
+                           field(command, "m_onFalse"));
+    }
+    return new ArrayList<Command>();
+  }
+
+  /**
+   * Determines if a command group is currently running one of its commands.
+   * This is only meaningful while the group itself is running.
+   *
+   * @param group is the command group.
+   *
+   * @param command is one of the commands in the group.
+   *
+   * @return <b>true</b> if the group is running the command.
+   */
+  private static boolean isRunning(Command group, Command command) {
+    if(group instanceof SequentialCommandGroup) {
+      List<Command> commands = field(group, "m_commands");
+      int index = field(group, "m_currentCommandIndex");
+      return (index >= 0) && (index < commands.size()) &&
+        (commands.get(index) == command);
+    }
+    if((group instanceof ParallelCommandGroup) ||
+       (group instanceof ParallelDeadlineGroup)) {
+      Map<Command, Boolean> commands = field(group, "m_commands");
+      return Boolean.TRUE.equals(commands.get(command));
+    }
+    if(group instanceof ConditionalCommand) {
+      return field(group, "m_selectedCommand") == command;
+    }
+
+    // A race group runs all of its commands until the first one finishes,
+    // at which point the group itself finishes.
+    return true;
+  }
+
+  /**
+   * Reads a private field of a WPILib command group. The groups do not
+   * expose which of their commands are running, so this is the only way to
+   * time the commands inside a routine.
+   *
+   * @param object is the command group.
+   *
+   * @param name is the name of the field.
+   *
+   * @return the value of the field.
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> T field(Object object, String name) {
+    for(Class<?> type = object.getClass(); type != null;
+        type = type.getSuperclass()) {
+      try {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        return (T)field.get(object);
+      } catch(NoSuchFieldException e) {
+        continue;
+      } catch(IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    throw new IllegalStateException(object.getClass().getName() +
+                                    " has no field " + name);
+  }
+
+  /**
+   * The timing of one command in a routine.
+   */
+  private static final class Node {
+    private final Command m_command;
+    private final String m_label;
+    private final List<Node> m_children = new ArrayList<Node>();
+    private boolean m_running = false;
+    private boolean m_cutOff = false;
+    private double m_start = Double.NaN;
+    private double m_segmentStart;
+    private double m_time = 0;
+    private double m_error = Double.NaN;
+
+    private Node(Command command) {
+      m_command = command;
+      if(command instanceof FollowTrajectory) {
+        m_label = command.getName() + " " +
+          ((FollowTrajectory)command).getTrajectoryName();
+      } else {
+        m_label = command.getName();
+      }
+
+      for(Command child : children(command)) {
+        m_children.add(new Node(child));
+      }
+    }
+
+    /**
+     * Updates the timing of this command and the commands inside it after a
+     * run of the scheduler.
+     *
+     * @param running is <b>true</b> if the command is running.
+     *
+     * @param time is the time since the routine started.
+     */
+    private void sample(boolean running, double time) {
+      if(running && !m_running) {
+        if(Double.isNaN(m_start)) {
+          m_start = time;
+        }
+        m_segmentStart = time;
+      } else if(!running && m_running) {
+        m_time += time - m_segmentStart;
+        if(m_command instanceof FollowTrajectory) {
+          m_error = ((FollowTrajectory)m_command).getEndError();
+        }
+      }
+      m_running = running;
+
+      for(Node child : m_children) {
+        child.sample(running && isRunning(m_command, child.m_command), time);
+      }
+    }
+
+    /**
+     * Marks this command and the commands inside it as being stopped
+     * because the autonomous period ended.
+     */
+    private void cutOff() {
+      if(m_running) {
+        m_cutOff = true;
+        for(Node child : m_children) {
+          child.cutOff();
+        }
+      }
+    }
+
+    /**
+     * Adds this command and the commands inside it to a list.
+     *
+     * @param nodes is the list to add to.
+     */
+    private void collect(List<Node> nodes) {
+      nodes.add(this);
+      for(Node child : m_children) {
+        child.collect(nodes);
+      }
+    }
+
+    /**
+     * Prints the timing of this command and the commands inside it, in the
+     * order that they started. Commands that never ran are left out.
+     *
+     * @param depth is the nesting depth of this command.
+     */
+    private void print(int depth) {
+      if(Double.isNaN(m_start)) {
+        return;
+      }
+
+      System.out.println(String.format("%-56s %8.2f %7.2f%s %9s",
+                                       "  ".repeat(depth) + m_label,
+                                       m_start, m_time,
+                                       m_cutOff ? "+" : " ",
+                                       Double.isNaN(m_error) ? "" :
+                                         String.format("%.3f", m_error)));
+
+      List<Node> children = new ArrayList<Node>(m_children);
+      children.sort(Comparator.comparingDouble(node -> node.m_start));
+      for(Node child : children) {
+        child.print(depth + 1);
+      }
+    }
+  }
+}
@@ -5,7 +5,13 @@
 
 package frc.robot;
 
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.DifferentialDriveKinematics;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import edu.wpi.first.math.numbers.N5;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.util.Color;
 import frc.robot.utils.GearRatio;
@@ -135,6 +141,12 @@ public final class Constants {
      * hub, resulting in the close to the hub time delay between shots.
      */
     public static final double kShootThreshold = 5.9;
+
+    /**
+     * The speed (in rotations per second) of a catapult motor at 12 volts,
+     * which is used to move the catapults in simulation.
+     */
+    public static final double kSimSpeed = 60.0;
   }
 
   /**
@@ -289,6 +301,51 @@ public final class Constants {
      */
     public static final DifferentialDriveKinematics kKinematics =
       new DifferentialDriveKinematics(kTrackWidth);
+
+    /**
+     * The reduction from the drive motors to the wheels, used by the
+     * simulation.  This must agree with kRotationsToMeters.
+     */
+    public static final double kGearing = 50.0 / 10.0;
+
+    /**
+     * The diameter of the drive wheels, in meters, used by the simulation.
+     */
+    public static final double kWheelDiameter = Units.inchesToMeters(4);
+
+    /**
+     * The standard deviations of the pose estimator's model of the drive
+     * train: x and y (in meters), heading (in radians), and left and right
+     * distance (in meters).  Larger values trust the model less, and the
+     * measurements more.
+     */
+    public static final Matrix<N5, N1> kStateStdDevs =
+      VecBuilder.fill(0.05, 0.05, Units.degreesToRadians(5), 0.05, 0.05);
+
+    /**
+     * The standard deviations of the encoder and NavX measurements used by
+     * the pose estimator: left and right distance (in meters) and heading (in
+     * radians).
+     */
+    public static final Matrix<N3, N1> kLocalStdDevs =
+      VecBuilder.fill(0.01, 0.01, Units.degreesToRadians(0.1));
+
+    /**
+     * The rate, in Hz, at which the odometry thread updates the odometry
+     * and the pose history.  The NavX and the encoder status frames of the
+     * SPARK MAXes are set to report at this rate, so it can be no more than
+     * 200 (the fastest that the NavX can update over SPI).  The pose
+     * estimator is too costly to run this often, so it is fed the most
+     * recent odometry update once per robot loop.
+     */
+    public static final int kOdometryRate = 200;
+
+    /**
+     * The number of poses kept in the pose history, which is one second of
+     * updates from the odometry thread.
+     */
+    public static final int kPoseHistory = kOdometryRate;
+
   }
 
   /**
@@ -349,6 +406,240 @@ public final class Constants {
      * sequences.
      */
     public static final String kFifthDel = "Fifth Delay";
+
+    /**
+     * The maximum number of generated trajectories to keep in memory.  The
+     * least recently used trajectories beyond this are discarded and are
+     * generated again if they are needed.
+     */
+    public static final int kTrajectoryCacheSize = 6;
+
+    /**
+     * The length of the autonomous period, in seconds. The replay harness
+     * stops a routine that has not finished by then.
+     */
+    public static final double kLength = 15.0;
+
+    /**
+     * The period of the robot loop, in seconds, which the replay harness
+     * advances the simulated clock by for each run of the scheduler.
+     */
+    public static final double kPeriod = 0.02;
+  }
+
+  /**
+   * Configuration of the loop timing profiler.
+   */
+  public static final class Profiler {
+    /**
+     * The number of loop timings kept for each profiled section, which is
+     * five seconds of loops at 50 Hz.
+     */
+    public static final int kWindow = 250;
+
+    /**
+     * The period, in seconds, at which the timing statistics are published.
+     */
+    public static final double kPublishPeriod = 1.0;
+  }
+
+  /**
+   * Configuration of the CAN telemetry sampler.
+   */
+  public static final class Sampler {
+    /**
+     * The period, in seconds, of the sampler thread. Every signal is sampled
+     * at a multiple of this period.
+     */
+    public static final double kPeriod = 0.01;
+
+    /**
+     * The period, in seconds, at which motor controller applied outputs are
+     * sampled.
+     */
+    public static final double kOutputPeriod = 0.02;
+
+    /**
+     * The period, in seconds, at which motor controller output currents are
+     * sampled.
+     */
+    public static final double kCurrentPeriod = 0.02;
+
+    /**
+     * The period, in seconds, at which motor controller bus voltages are
+     * sampled.
+     */
+    public static final double kBusVoltagePeriod = 0.1;
+  }
+
+  /**
+   * Configuration of the detailed logging.  A frame of logged values is only
+   * written when one of its values changes by more than that value's
+   * epsilon, or when kKeyframePeriod has passed since it was last written.
+   */
+  public static final class Logging {
+    /**
+     * The longest time, in seconds, between writes of a frame.
+     */
+    public static final double kKeyframePeriod = 1.0;
+
+    /**
+     * The smallest change in a motor controller applied output that is
+     * logged.
+     */
+    public static final double kOutputEpsilon = 0.005;
+
+    /**
+     * The smallest change in a bus voltage, in volts, that is logged.
+     */
+    public static final double kVoltageEpsilon = 0.1;
+
+    /**
+     * The smallest change in a current, in amps, that is logged.
+     */
+    public static final double kCurrentEpsilon = 0.25;
+
+    /**
+     * The smallest change in an encoder position that is logged.
+     */
+    public static final double kPositionEpsilon = 0.001;
+
+    /**
+     * The smallest change in an encoder velocity that is logged.
+     */
+    public static final double kVelocityEpsilon = 0.01;
+  }
+
+  /**
+   * Configuration of the vision tracking.
+   */
+  public static final class Vision {
+    /**
+     * The number of camera frames that the target pitch and bearing are
+     * filtered over.
+     */
+    public static final int kFilterWindow = 7;
+
+    /**
+     * The time, in seconds, after the most recent camera frame at which the
+     * target is considered lost if no new frame has arrived.
+     */
+    public static final double kFrameTimeout = 0.25;
+
+    /**
+     * The height of the camera lens above the floor, in meters.
+     */
+    public static final double kCameraHeight = Units.inchesToMeters(31.5);
+
+    /**
+     * The angle, in degrees, that the camera is tilted up from horizontal.
+     */
+    public static final double kCameraPitch = 40.0;
+
+    /**
+     * The direction, in degrees, that the camera faces relative to the front
+     * of the robot.  The camera looks out the back of the robot, in the same
+     * direction that the catapults shoot.
+     */
+    public static final double kCameraHeading = 180.0;
+
+    /**
+     * The distance, in meters, of the camera in front of the center of the
+     * robot (negative if it is behind the center).
+     */
+    public static final double kCameraX = Units.inchesToMeters(-12.0);
+
+    /**
+     * The distance, in meters, of the camera to the left of the center of the
+     * robot (negative if it is to the right).
+     */
+    public static final double kCameraY = 0.0;
+
+    /**
+     * The height of the vision target on the upper hub above the floor, in
+     * meters.
+     */
+    public static final double kTargetHeight = Units.inchesToMeters(104.0);
+
+    /**
+     * The distance, in meters, from the vision target to the center of the
+     * hub.
+     */
+    public static final double kHubRadius = Units.inchesToMeters(26.69);
+
+    /**
+     * The position of the center of the hub on the field, in meters, which
+     * is the center of the field.
+     */
+    public static final Translation2d kHubPosition =
+      new Translation2d(Units.feetToMeters(54.0) / 2,
+                        Units.feetToMeters(27.0) / 2);
+
+    /**
+     * The standard deviations of the robot poses measured from the hub: x
+     * and y (in meters) and heading (in radians).  The heading of a measured
+     * pose comes from the NavX, not the camera, so it is given a large
+     * deviation to keep it from affecting the estimated heading.
+     */
+    public static final Matrix<N3, N1> kVisionStdDevs =
+      VecBuilder.fill(0.25, 0.25, Units.degreesToRadians(30));
+
+    /**
+     * The largest difference, in meters, between a robot pose measured from
+     * the hub and the estimated pose for the measurement to be used.  Larger
+     * differences are most likely from something other than the hub being
+     * mistaken for the target.
+     */
+    public static final double kMaxVisionCorrection = 1.0;
+
+    /**
+     * The time, in seconds, after the hub was last seen that its estimated
+     * position is no longer trusted (since the odometry drifts over time).
+     */
+    public static final double kHubTimeout = 5.0;
+
+    /**
+     * The time, in seconds, after a camera snapshot is requested during which
+     * further snapshot requests are ignored.
+     */
+    public static final double kSnapshotWindow = 0.5;
+  }
+
+  /**
+   * Configuration of the fit of the drive train's feedforward gains to the
+   * data recorded by SysId.
+   */
+  public static final class SysId {
+    /**
+     * The wheel speed, in meters per second, below which samples are not
+     * used in the fit. The drive train is barely moving (or stuck) at these
+     * speeds, so the samples mostly measure the encoder noise.
+     */
+    public static final double kVelocityThreshold = 0.1;
+
+    /**
+     * The number of samples in the median filter that removes the spikes
+     * from the measured wheel speeds before they are differentiated to find
+     * the acceleration. This must be odd.
+     */
+    public static final int kMedianWindow = 9;
+
+    /**
+     * The largest relative difference between the distance per motor
+     * rotation of the SysId data (its unitsPerRotation, which is per wheel
+     * rotation, divided by kGearing) and kRotationsToMeters for which the
+     * fitted gains are written.  Data recorded with a different distance per rotation gives
+     * gains that are off by the same ratio.
+     */
+    public static final double kUnitsTolerance = 0.01;
+
+    /**
+     * How far above the free speed of the drive motors the top speed implied
+     * by the fitted kV (12 volts / kV) may be before the fit is rejected.
+     * The free speed is an unloaded, ideal motor, so a real drive train
+     * should never exceed it.
+     */
+    public static final double kFreeSpeedMargin = 1.1;
   }
 
   /**
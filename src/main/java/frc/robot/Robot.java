@@ -9,7 +9,11 @@ import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.utils.CanSampler;
 import frc.robot.utils.Log;
+import frc.robot.utils.LoopProfiler;
+import frc.robot.utils.Telemetry;
+import frc.robot.utils.Trajectories;
 
 /**
  * The VM is configured to automatically run this class, and to call the functions corresponding to
@@ -29,9 +33,17 @@ public class Robot extends TimedRobot {
   @Override
   public void robotInit() {
     Log.start();
+    LoopProfiler.start();
+    // Register the trajectories, which are generated in the background once
+    // an autonomous routine that uses them is selected.
+    Trajectories.register();
+    Trajectories.publishLimits();
     // Instantiate our RobotContainer.  This will perform all our button bindings, and put our
     // autonomous chooser on the dashboard.
     m_robotContainer = new RobotContainer();
+    // Start reading the motor controller telemetry registered by the
+    // subsystems.
+    CanSampler.start();
   }
 
   /**
@@ -47,7 +59,12 @@ public class Robot extends TimedRobot {
     // commands, running already-scheduled commands, removing finished or interrupted commands,
     // and running subsystem periodic() methods.  This must be called from the robot's periodic
     // block in order for anything in the Command-based framework to work.
+    LoopProfiler.startLoop();
     CommandScheduler.getInstance().run();
+    LoopProfiler.endLoop();
+    // Write the detailed logging gathered by the subsystems during this loop.
+    CanSampler.update();
+    Telemetry.flush();
   }
 
   /** This function is called once each time the robot enters Disabled mode. */
@@ -58,7 +75,10 @@ public class Robot extends TimedRobot {
   }
 
   @Override
-  public void disabledPeriodic() {}
+  public void disabledPeriodic() {
+    m_robotContainer.prefetchAutonomous();
+    Trajectories.updateLimits();
+  }
 
   /** This autonomous runs the autonomous command selected by your {@link RobotContainer} class. */
   @Override
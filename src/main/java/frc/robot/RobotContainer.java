@@ -5,6 +5,11 @@
 
 package frc.robot;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.BooleanSupplier;
 import java.util.function.DoubleSupplier;
 
@@ -58,16 +63,19 @@ public class RobotContainer {
   private final PowerDistribution powerHub = new PowerDistribution(2, ModuleType.kRev);
   private final Pneumatics pneumatics = new Pneumatics();
   private final NavX navx = new NavX();
-  private final VisionTracking visionTracking = new VisionTracking();
+  private final Drive drive = new Drive(navx);
+  private final VisionTracking visionTracking = new VisionTracking(navx, drive);
 
   private final PrettyLights prettyLights = new PrettyLights(powerHub);
   private final Climber climber = new Climber(navx);
   private final Intake intake = new Intake();
   private final LeftCatapult leftCatapult = new LeftCatapult(visionTracking);
   private final RightCatapult rightCatapult = new RightCatapult(visionTracking);
-  private final Drive drive = new Drive(navx);
 
   private final SendableChooser<Command> m_chooser;
+  private final Map<String, Command> m_autos = new LinkedHashMap<>();
+  private final Map<Command, String[]> m_autoTrajectories = new HashMap<>();
+  private Command m_prefetchedAuto;
 
   public boolean robotResetState = true;
   public boolean disableVision = false;
@@ -86,16 +94,29 @@ public class RobotContainer {
   public RobotContainer() {
     powerHub.setSwitchableChannel(false);
 
-    Trajectories.load();
-
     // A chooser for autonomous commands. This way we can choose between Paths for Autonomous Period.
     m_chooser = new SendableChooser<>();
     //m_chooser.addOption("Auto Right", new RightR(drive, intake, navx, leftCatapult, rightCatapult, prettyLights, driverController));
-    m_chooser.setDefaultOption("Auto D", new AutoD(drive, intake, navx, leftCatapult, rightCatapult, prettyLights, driverController, visionTracking));
-    m_chooser.addOption("Auto B", new AutoB(drive, intake, navx, leftCatapult, rightCatapult, prettyLights, driverController));
-    m_chooser.addOption("Auto Simple", new AutoSimple(drive, intake, navx, leftCatapult, rightCatapult, prettyLights, driverController));
+    Command autoD = new AutoD(drive, intake, navx, leftCatapult, rightCatapult, prettyLights, driverController, visionTracking);
+    Command autoB = new AutoB(drive, intake, navx, leftCatapult, rightCatapult, prettyLights, driverController);
+    Command autoSimple = new AutoSimple(drive, intake, navx, leftCatapult, rightCatapult, prettyLights, driverController);
+    m_chooser.setDefaultOption("Auto D", autoD);
+    m_chooser.addOption("Auto B", autoB);
+    m_chooser.addOption("Auto Simple", autoSimple);
     m_chooser.addOption("Do Nothing", null);
 
+    // The autonomous routines by name, so that they can be run without the
+    // chooser (for example by the AutoReplay harness).
+    m_autos.put("Auto D", autoD);
+    m_autos.put("Auto B", autoB);
+    m_autos.put("Auto Simple", autoSimple);
+
+    // The trajectories used by each autonomous, so they can be generated as
+    // soon as the autonomous is selected.
+    m_autoTrajectories.put(autoD, AutoD.trajectories);
+    m_autoTrajectories.put(autoB, AutoB.trajectories);
+    m_autoTrajectories.put(autoSimple, AutoSimple.trajectories);
+
     //Delays between the Autonomouses
     SmartDashboard.putNumber("Starting Delay", 0);
     SmartDashboard.putNumber("Second Delay", 0);
@@ -240,7 +261,46 @@ public class RobotContainer {
     }
   }
 
+  /**
+   * Starts generating the trajectories for the selected autonomous whenever
+   * the selection changes, so that they are ready before the match starts.
+   * Should be called periodically while the robot is disabled.
+   */
+  public void prefetchAutonomous() {
+    Command selected = m_chooser.getSelected();
+
+    if(selected != m_prefetchedAuto) {
+      m_prefetchedAuto = selected;
+
+      String[] trajectories = m_autoTrajectories.get(selected);
+      if(trajectories != null) {
+        Trajectories.prefetch(trajectories);
+      }
+    }
+  }
+
   public Command getAutonomousCommand() {
     return m_chooser.getSelected();
   }
+
+  /**
+   * Gets the names of the autonomous routines.
+   *
+   * @return the names, in the order that they appear in the chooser.
+   */
+  public Set<String> getAutonomousNames() {
+    return Collections.unmodifiableSet(m_autos.keySet());
+  }
+
+  /**
+   * Gets an autonomous routine by name.
+   *
+   * @param name is the name of the routine, as shown in the chooser.
+   *
+   * @return the routine, or <b>null</b> if there is no routine with the
+   *         given name.
+   */
+  public Command getAutonomousCommand(String name) {
+    return m_autos.get(name);
+  }
 }
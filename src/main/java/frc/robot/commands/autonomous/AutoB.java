@@ -28,6 +28,15 @@ import frc.robot.utils.Trajectories;
 import frc.robot.commands.catapult.CatapultOverrride;
 
 public class AutoB extends SequentialCommandGroup {
+  /**
+   * The trajectories followed by this autonomous routine.
+   */
+  public static final String[] trajectories = {
+    Trajectories.autoB,
+    Trajectories.toStrategicCargo,
+    Trajectories.backupStrategic
+  };
+
   /** Creates a new LeftL. */
   public AutoB(Drive drive, Intake intake, NavX navx,
                LeftCatapult leftCatapult, RightCatapult rightCatapult,
@@ -37,7 +46,7 @@ public class AutoB extends SequentialCommandGroup {
               new InstantCommand(() -> intake.extend(), intake),
               new WaitCommand(0.1),
               new InstantCommand(() -> intake.run(1.0), intake),
-              new FollowTrajectory(drive, Trajectories.get(Trajectories.autoB), true),
+              new FollowTrajectory(drive, Trajectories.autoB, true),
               new WaitCommand(0.5),
               new InstantCommand(() -> intake.run(0), intake),
               new WaitCommand(0.50),
@@ -47,9 +56,9 @@ public class AutoB extends SequentialCommandGroup {
               parallel(new ResetLeft(leftCatapult),
                        new ResetRight(rightCatapult),
                        new InstantCommand(() -> intake.run(0.1), intake),
-                       new FollowTrajectory(drive, Trajectories.get(Trajectories.toStrategicCargo), false)),
+                       new FollowTrajectory(drive, Trajectories.toStrategicCargo, false)),
               new InstantCommand(() -> intake.runReverse(0.8), intake),
-              new FollowTrajectory(drive, Trajectories.get(Trajectories.backupStrategic), false)
+              new FollowTrajectory(drive, Trajectories.backupStrategic, false)
     );
   }
 }
@@ -30,6 +30,15 @@ import frc.robot.utils.Trajectories;
 import frc.robot.commands.catapult.CatapultOverrride;
 
 public class AutoD extends SequentialCommandGroup {
+  /**
+   * The trajectories followed by this autonomous routine.
+   */
+  public static final String[] trajectories = {
+    Trajectories.rightL,
+    Trajectories.cargo2ToTerminal,
+    Trajectories.terminalToScore
+  };
+
   /** Creates a new RightL. */
   public AutoD(Drive drive, Intake intake, NavX navx,
                LeftCatapult leftCatapult, RightCatapult rightCatapult,
@@ -39,7 +48,7 @@ public class AutoD extends SequentialCommandGroup {
                 new CatapultOverrride(leftCatapult, rightCatapult).withTimeout(0.25),
                 new InstantCommand(() -> intake.extend(), intake),
                 new InstantCommand(() -> intake.run(1.0), intake),
-                new FollowTrajectory(drive, Trajectories.get(Trajectories.rightL), true),
+                new FollowTrajectory(drive, Trajectories.rightL, true),
                 new WaitCommand(0.25),
                 new InstantCommand(() -> intake.run(0.0), intake),
                 new WaitCommand(0.25),
@@ -49,9 +58,9 @@ public class AutoD extends SequentialCommandGroup {
                 parallel(new ResetLeft(leftCatapult),
                          new ResetRight(rightCatapult),
                          new InstantCommand(() -> intake.run(1.0), intake),
-                         new FollowTrajectory(drive, Trajectories.get(Trajectories.cargo2ToTerminal), false)),
+                         new FollowTrajectory(drive, Trajectories.cargo2ToTerminal, false)),
                 new WaitCommand(0.4),
-                new FollowTrajectory(drive, Trajectories.get(Trajectories.terminalToScore), false),
+                new FollowTrajectory(drive, Trajectories.terminalToScore, false),
                 new InstantCommand(() -> intake.run(0.0), intake),
                 //new WaitCommand(0.1),
                 new Score(leftCatapult, rightCatapult, prettylights, null, null, vision));
@@ -27,6 +27,13 @@ import frc.robot.utils.NavX;
 import frc.robot.utils.Trajectories;
 
 public class AutoSimple extends SequentialCommandGroup {
+  /**
+   * The trajectories followed by this autonomous routine.
+   */
+  public static final String[] trajectories = {
+    Trajectories.straight
+  };
+
   /** Creates a new AutoSimple. */
   public AutoSimple(Drive drive, Intake intake, NavX navx,
                     LeftCatapult leftCatapult, RightCatapult rightCatapult,
@@ -35,7 +42,7 @@ public class AutoSimple extends SequentialCommandGroup {
                 new InstantCommand(() -> intake.extend(), intake),
                 new WaitCommand(0.1),
                 new InstantCommand(() -> intake.run(1.0), intake),
-                new FollowTrajectory(drive, Trajectories.get(Trajectories.straight), true),
+                new FollowTrajectory(drive, Trajectories.straight, true),
                 new WaitCommand(0.5),
                 new InstantCommand(() -> intake.run(0), intake),
                 new WaitCommand(0.50),
@@ -24,6 +24,15 @@ import frc.robot.utils.NavX;
 import frc.robot.utils.Trajectories;
 
 public class RightR extends SequentialCommandGroup {
+  /**
+   * The trajectories followed by this autonomous routine.
+   */
+  public static final String[] trajectories = {
+    Trajectories.rightR,
+    Trajectories.toTerminal,
+    Trajectories.terminalToScore
+  };
+
   /** Creates a new RightR. */
   public RightR(Drive drive, Intake intake, NavX navx,
                 LeftCatapult leftCatapult, RightCatapult rightCatapult,
@@ -35,7 +44,7 @@ public class RightR extends SequentialCommandGroup {
                 new ScoreRightNoColor(rightCatapult),
                 new WaitCommandNT(Auto.kSecondDel),
                 new InstantCommand(() -> intake.run(1.0), intake),
-                new FollowTrajectory(drive, Trajectories.get(Trajectories.rightR), true),
+                new FollowTrajectory(drive, Trajectories.rightR, true),
                 new InstantCommand(() -> intake.run(0.0), intake),
                 new InstantCommand(() -> intake.retract(), intake),
                 new WaitCommand(0.5),
@@ -45,9 +54,9 @@ public class RightR extends SequentialCommandGroup {
                 new WaitCommandNT(Auto.kThirdDel),
                 //new WaitCommand(0.1),
                 new InstantCommand(() -> intake.run(1.0), intake),
-                new FollowTrajectory(drive, Trajectories.get(Trajectories.toTerminal), false),
+                new FollowTrajectory(drive, Trajectories.toTerminal, false),
                 new WaitCommand(1),
-                new FollowTrajectory(drive, Trajectories.get(Trajectories.terminalToScore), false),
+                new FollowTrajectory(drive, Trajectories.terminalToScore, false),
                 new InstantCommand(() -> intake.run(0.0), intake),
                 //new RotateByDegrees(navx, drive, () -> visionTracking.getYaw())
                 new WaitCommand(0.25),
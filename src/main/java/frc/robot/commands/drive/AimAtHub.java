@@ -20,7 +20,7 @@ public class AimAtHub extends SequentialCommandGroup {
     // Add your commands in the addCommands() call, e.g.
     // addCommands(new FooCommand(), new BarCommand());
     addCommands(
-      new RotateByDegrees(navx, drive, turn),
+      new RotateByDegrees(navx, drive, turn, true),
       new RumbleYes(prettylights, driverController, manipulatorController)
     );
   }
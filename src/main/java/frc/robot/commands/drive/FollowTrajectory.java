@@ -5,64 +5,241 @@
 
 package frc.robot.commands.drive;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.PIDController;
-import edu.wpi.first.math.controller.RamseteController;
 import edu.wpi.first.math.controller.SimpleMotorFeedforward;
-import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.CommandBase;
-import edu.wpi.first.wpilibj2.command.RamseteCommand;
 import frc.robot.Constants;
 import frc.robot.subsystems.Drive;
+import frc.robot.utils.DriveGains;
+import frc.robot.utils.Trajectories;
+import frc.robot.utils.PathPlanner.PathPlannerTrajectory2;
+import frc.robot.utils.PathPlanner.PrimitiveTrajectory;
+import frc.robot.utils.PathPlanner.TrajectoryCursor;
 
+/**
+ * Follows a trajectory using a Ramsete controller. This does the same thing
+ * as WPILib's RamseteCommand, but samples the trajectory into a reusable
+ * state and does the controller math on primitives, so that following a path
+ * does not create any garbage. Since time only moves forward while following
+ * the trajectory, it is sampled with a cursor that continues from the
+ * previous sample rather than searching the whole trajectory each loop.
+ */
 public class FollowTrajectory extends CommandBase {
   private final Drive m_drive;
-  private final Trajectory m_trajectory;
-  private final RamseteCommand m_ramsete;
+  private final String m_name;
+  private final SimpleMotorFeedforward m_feedforward;
+  private final PIDController m_pidleft;
+  private final PIDController m_pidright;
+  private final Timer m_timer = new Timer();
+  private final PrimitiveTrajectory.MutableState m_sample =
+    new PrimitiveTrajectory.MutableState();
+  private TrajectoryCursor m_cursor;
+  private Pose2d m_endPose;
+  private double m_prevTime;
+  private double m_prevLeftSpeed;
+  private double m_prevRightSpeed;
   public boolean m_resetodometry;
 
-  public FollowTrajectory(Drive drive, Trajectory trajectory,
-                          boolean resetodometry) {
+  /**
+   * Follows a trajectory. The trajectory is looked up when the command
+   * starts, so it is only generated if it is actually followed.
+   *
+   * @param drive is the drive subsystem.
+   *
+   * @param name is the name of the file that contains the trajectory.
+   *
+   * @param resetodometry is <b>true</b> if the odometry should be reset to
+   *                      the start of the trajectory.
+   */
+  public FollowTrajectory(Drive drive, String name, boolean resetodometry) {
     m_drive = drive;
-    m_trajectory = trajectory;
+    m_name = name;
     m_resetodometry = resetodometry;
 
     addRequirements(m_drive);
 
-    RamseteController ramsetecontroller = new RamseteController(Constants.Drive.kRamseteB, Constants.Drive.kRamseteZeta);
-    SimpleMotorFeedforward feedforward = new SimpleMotorFeedforward(Constants.Drive.kS, Constants.Drive.kV, Constants.Drive.kA);
-    PIDController pidleft = new PIDController(Constants.Drive.kPDriveVel, 0, Constants.Drive.kDDriveVel);
-    PIDController pidright = new PIDController(Constants.Drive.kPDriveVel, 0, Constants.Drive.kDDriveVel);
-
-    m_ramsete = new RamseteCommand(trajectory, drive::getPose, ramsetecontroller, feedforward, Constants.Drive.kKinematics,
-                                   drive::getWheelSpeeds, pidleft, pidright, drive::driveTankVolts, drive);
+    DriveGains gains = DriveGains.get();
+    m_feedforward = new SimpleMotorFeedforward(gains.getKS(), gains.getKV(), gains.getKA());
+    m_pidleft = new PIDController(Constants.Drive.kPDriveVel, 0, Constants.Drive.kDDriveVel);
+    m_pidright = new PIDController(Constants.Drive.kPDriveVel, 0, Constants.Drive.kDDriveVel);
   }
 
   // Called when the command is initially scheduled.
   @Override
   public void initialize() {
+    PathPlannerTrajectory2 trajectory = Trajectories.get(m_name);
+
+    if(trajectory == null) {
+      DriverStation.reportError("Unable to load trajectory " + m_name, false);
+      m_cursor = null;
+      m_endPose = null;
+      return;
+    }
+
+    m_cursor = new TrajectoryCursor(trajectory.getPrimitiveTrajectory());
+    m_endPose = trajectory.getEndState().poseMeters;
+
     // Reset the drive odometry to the initial pose of the trajectory.
     if (m_resetodometry == true) {
-      m_drive.resetOdometry(m_trajectory.getInitialPose());
+      m_drive.resetOdometry(trajectory.getInitialPose());
     }
 
-    m_ramsete.initialize();
+    m_cursor.sampleInto(0, m_sample);
+    m_prevLeftSpeed = leftSpeed(m_sample.velocity,
+                                m_sample.velocity * m_sample.curvature);
+    m_prevRightSpeed = rightSpeed(m_sample.velocity,
+                                  m_sample.velocity * m_sample.curvature);
+    m_prevTime = -1;
+
+    m_pidleft.reset();
+    m_pidright.reset();
+    m_timer.reset();
+    m_timer.start();
   }
 
   // Called every time the scheduler runs while the command is scheduled.
   @Override
   public void execute() {
-    m_ramsete.execute();
+    if(m_cursor == null) {
+      return;
+    }
+
+    double curTime = m_timer.get();
+    double dt = curTime - m_prevTime;
+
+    if(m_prevTime < 0) {
+      m_drive.driveTankVolts(0.0, 0.0);
+      m_prevTime = curTime;
+      return;
+    }
+
+    m_cursor.sampleInto(curTime, m_sample);
+
+    // The Ramsete control law, computed on the error between the robot pose
+    // and the sampled pose expressed in the robot's frame of reference.
+    Pose2d pose = m_drive.getPose();
+    double cos = pose.getRotation().getCos();
+    double sin = pose.getRotation().getSin();
+    double dx = m_sample.x - pose.getX();
+    double dy = m_sample.y - pose.getY();
+    double errorX = (cos * dx) + (sin * dy);
+    double errorY = (-sin * dx) + (cos * dy);
+    double errorTheta =
+      MathUtil.angleModulus(m_sample.heading - pose.getRotation().getRadians());
+
+    double velocityRef = m_sample.velocity;
+    double omegaRef = m_sample.velocity * m_sample.curvature;
+    double k = 2.0 * Constants.Drive.kRamseteZeta *
+      Math.sqrt((omegaRef * omegaRef) +
+                (Constants.Drive.kRamseteB * velocityRef * velocityRef));
+
+    double velocity = (velocityRef * Math.cos(errorTheta)) + (k * errorX);
+    double omega = omegaRef + (k * errorTheta) +
+      (Constants.Drive.kRamseteB * velocityRef * sinc(errorTheta) * errorY);
+
+    double leftSpeedSetpoint = leftSpeed(velocity, omega);
+    double rightSpeedSetpoint = rightSpeed(velocity, omega);
+
+    double leftFeedforward =
+      m_feedforward.calculate(leftSpeedSetpoint,
+                              (leftSpeedSetpoint - m_prevLeftSpeed) / dt);
+    double rightFeedforward =
+      m_feedforward.calculate(rightSpeedSetpoint,
+                              (rightSpeedSetpoint - m_prevRightSpeed) / dt);
+
+    double leftOutput = leftFeedforward +
+      m_pidleft.calculate(m_drive.getLeftVelocity(), leftSpeedSetpoint);
+    double rightOutput = rightFeedforward +
+      m_pidright.calculate(m_drive.getRightVelocity(), rightSpeedSetpoint);
+
+    m_drive.driveTankVolts(leftOutput, rightOutput);
+    m_prevLeftSpeed = leftSpeedSetpoint;
+    m_prevRightSpeed = rightSpeedSetpoint;
+    m_prevTime = curTime;
   }
 
   // Called once the command ends or is interrupted.
   @Override
   public void end(boolean interrupted) {
-    m_ramsete.end(interrupted);
+    m_timer.stop();
+
+    if(interrupted) {
+      m_drive.driveTankVolts(0.0, 0.0);
+    }
   }
 
   // Returns true when the command should end.
   @Override
   public boolean isFinished() {
-    return m_ramsete.isFinished();
+    return (m_cursor == null) ||
+      m_timer.hasElapsed(m_cursor.getTrajectory().getTotalTimeSeconds());
+  }
+
+  /**
+   * Gets the name of the trajectory that this command follows.
+   *
+   * @return the name of the file that contains the trajectory.
+   */
+  public String getTrajectoryName() {
+    return m_name;
+  }
+
+  /**
+   * Gets the distance between the robot and the end of the trajectory, which
+   * is how far off the robot is once the trajectory has been followed.
+   *
+   * @return the distance in meters, or NaN if the trajectory has not been
+   *         started or could not be loaded.
+   */
+  public double getEndError() {
+    if(m_endPose == null) {
+      return Double.NaN;
+    }
+    return m_drive.getPose().getTranslation().
+      getDistance(m_endPose.getTranslation());
+  }
+
+  /**
+   * Computes the speed of the left side of the drive train.
+   *
+   * @param velocity is the linear velocity of the robot.
+   *
+   * @param omega is the angular velocity of the robot.
+   *
+   * @return the speed of the left wheels.
+   */
+  private static double leftSpeed(double velocity, double omega) {
+    return velocity - ((Constants.Drive.kTrackWidth / 2) * omega);
+  }
+
+  /**
+   * Computes the speed of the right side of the drive train.
+   *
+   * @param velocity is the linear velocity of the robot.
+   *
+   * @param omega is the angular velocity of the robot.
+   *
+   * @return the speed of the right wheels.
+   */
+  private static double rightSpeed(double velocity, double omega) {
+    return velocity + ((Constants.Drive.kTrackWidth / 2) * omega);
+  }
+
+  /**
+   * Computes sin(x) / x, which approaches 1 as x approaches 0.
+   *
+   * @param x is the value to compute.
+   *
+   * @return the value of sin(x) / x.
+   */
+  private static double sinc(double x) {
+    if(Math.abs(x) < 1e-9) {
+      return 1.0 - ((x * x) / 6.0);
+    }
+    return Math.sin(x) / x;
   }
 }
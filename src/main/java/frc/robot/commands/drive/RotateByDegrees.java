@@ -17,14 +17,34 @@ public class RotateByDegrees extends CommandBase {
   private final NavX m_navx;
   private final Drive m_drive;
   private final DoubleSupplier m_turn;
+  private final boolean m_track;
 
   private PIDController pid;
 
   public RotateByDegrees(NavX navx, Drive drive, DoubleSupplier turn) {
+    this(navx, drive, turn, false);
+  }
+
+  /**
+   * Creates a command that turns the robot.
+   *
+   * @param navx is the NavX used to measure the robot's heading.
+   *
+   * @param drive is the drive subsystem.
+   *
+   * @param turn supplies the angle to turn, in degrees.
+   *
+   * @param track is <b>true</b> if the angle to turn should be read every
+   *              loop (so that the target heading follows a moving target),
+   *              or <b>false</b> if it is only read when the command starts.
+   */
+  public RotateByDegrees(NavX navx, Drive drive, DoubleSupplier turn,
+                         boolean track) {
     double kp, ki, kd;
 
     m_navx = navx;
     m_turn = turn;
+    m_track = track;
     m_drive = drive;
     addRequirements(m_drive);
     kp = 0.12;
@@ -58,6 +78,10 @@ public class RotateByDegrees extends CommandBase {
   public void execute() {
     double spin;
 
+    if(m_track) {
+      pid.setSetpoint(m_navx.getAngle() - m_turn.getAsDouble());
+    }
+
     spin = pid.calculate(m_navx.getAngle());
     if(Math.abs(spin) < 0.05) {
       spin = Math.copySign(0.05, spin);
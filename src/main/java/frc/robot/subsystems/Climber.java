@@ -13,37 +13,43 @@ import static frc.robot.Constants.Climber.kRampRate;
 import static frc.robot.Constants.Climber.kReverseLimit;
 import static frc.robot.Constants.Climber.kRotationsToInches;
 import static frc.robot.Constants.Climber.kSolenoid;
+import static frc.robot.Constants.Logging.kCurrentEpsilon;
+import static frc.robot.Constants.Logging.kOutputEpsilon;
+import static frc.robot.Constants.Logging.kPositionEpsilon;
+import static frc.robot.Constants.Logging.kVoltageEpsilon;
+import static frc.robot.Constants.Sampler.kBusVoltagePeriod;
+import static frc.robot.Constants.Sampler.kCurrentPeriod;
+import static frc.robot.Constants.Sampler.kOutputPeriod;
 
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.CANSparkMax.IdleMode;
 import com.revrobotics.CANSparkMaxLowLevel.MotorType;
 import com.revrobotics.RelativeEncoder;
 
-import edu.wpi.first.util.datalog.BooleanLogEntry;
-import edu.wpi.first.util.datalog.DataLog;
-import edu.wpi.first.util.datalog.DoubleLogEntry;
 import edu.wpi.first.util.sendable.SendableBuilder;
-import edu.wpi.first.wpilibj.DataLogManager;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.PneumaticsModuleType;
 import edu.wpi.first.wpilibj.Solenoid;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.utils.CanSampler;
+import frc.robot.utils.LoopProfiler;
 import frc.robot.utils.NavX;
+import frc.robot.utils.Telemetry;
 
 public class Climber extends SubsystemBase {
   private final CANSparkMax m_arm;
   private final RelativeEncoder m_encoder;
   private final Solenoid m_solenoid;
-  private final DoubleLogEntry m_logPosition;
-  private final DoubleLogEntry m_logOutput;
-  private final DoubleLogEntry m_logBusVoltage;
-  private final DoubleLogEntry m_logCurrent;
-  private final BooleanLogEntry m_logSolenoid;
+  private final Telemetry.Field m_logPosition;
+  private final Telemetry.Field m_logSolenoid;
   private final NavX m_navx;
   private float largestVal = 0;
   private boolean safe;
   private boolean back = true;
 
+  private final LoopProfiler.Section m_profile =
+    LoopProfiler.section("Climber");
+
   public Climber(NavX navx) {
     m_arm = new CANSparkMax(kMotor, MotorType.kBrushless);
     m_arm.restoreFactoryDefaults();
@@ -65,28 +71,29 @@ public class Climber extends SubsystemBase {
     m_navx = navx;
 
     if(kEnableDetailedLogging) {
-      DataLog log = DataLogManager.getLog();
-      m_logPosition = new DoubleLogEntry(log, "/climber/position");
-      m_logOutput = new DoubleLogEntry(log, "/climber/output");
-      m_logBusVoltage = new DoubleLogEntry(log, "/climber/busVoltage");
-      m_logCurrent = new DoubleLogEntry(log, "/climber/current");
-      m_logSolenoid = new BooleanLogEntry(log, "/climber/solenoid");
+      Telemetry.Frame frame = Telemetry.frame("/climber");
+      m_logPosition = frame.field("position", kPositionEpsilon);
+      CanSampler.signal(m_arm::getAppliedOutput, kOutputPeriod,
+                        frame.field("output", kOutputEpsilon));
+      m_logSolenoid = frame.field("solenoid");
+
+      Telemetry.Frame power = Telemetry.frame("/climber/power");
+      CanSampler.signal(m_arm::getBusVoltage, kBusVoltagePeriod,
+                        power.field("busVoltage", kVoltageEpsilon));
+      CanSampler.signal(m_arm::getOutputCurrent, kCurrentPeriod,
+                        power.field("current", kCurrentEpsilon));
     } else {
       m_logPosition = null;
-      m_logOutput = null;
-      m_logBusVoltage = null;
-      m_logCurrent = null;
       m_logSolenoid = null;
     }
   }
 
   @Override
   public void periodic() {
+    m_profile.start();
+
     if(kEnableDetailedLogging) {
-      m_logPosition.append(m_encoder.getPosition());
-      m_logOutput.append(m_arm.getAppliedOutput());
-      m_logBusVoltage.append(m_arm.getBusVoltage());
-      m_logCurrent.append(m_arm.getOutputCurrent());
+      m_logPosition.set(m_encoder.getPosition());
     }
 
     float roll = m_navx.getRoll();
@@ -116,6 +123,8 @@ public class Climber extends SubsystemBase {
         back = true;
       }
     }
+
+    m_profile.stop();
   }
 
   public void setBackTrue() {
@@ -147,7 +156,7 @@ public class Climber extends SubsystemBase {
   public void _armBack() {
     m_solenoid.set(true);
     if(kEnableDetailedLogging) {
-      m_logSolenoid.append(m_solenoid.get());
+      m_logSolenoid.set(m_solenoid.get());
     }
   }
 
@@ -163,7 +172,7 @@ public class Climber extends SubsystemBase {
   public void _armUp() {
     m_solenoid.set(false);
     if(kEnableDetailedLogging) {
-      m_logSolenoid.append(m_solenoid.get());
+      m_logSolenoid.set(m_solenoid.get());
     }
   }
 
@@ -179,7 +188,7 @@ public class Climber extends SubsystemBase {
   public void _armToggle() {
     m_solenoid.toggle();
     if(kEnableDetailedLogging) {
-      m_logSolenoid.append(m_solenoid.get());
+      m_logSolenoid.set(m_solenoid.get());
     }
   }
 
@@ -9,60 +9,116 @@ import static frc.robot.Constants.kEnableDetailedLogging;
 import static frc.robot.Constants.Drive.kCurrentLimit;
 import static frc.robot.Constants.Drive.kLeftFrontMotor;
 import static frc.robot.Constants.Drive.kLeftRearMotor;
+import static frc.robot.Constants.Drive.kLocalStdDevs;
 import static frc.robot.Constants.Drive.kMotorSafetyTime;
+import static frc.robot.Constants.Drive.kOdometryRate;
+import static frc.robot.Constants.Drive.kPoseHistory;
 import static frc.robot.Constants.Drive.kRampRate;
 import static frc.robot.Constants.Drive.kRightFrontMotor;
 import static frc.robot.Constants.Drive.kRightRearMotor;
 import static frc.robot.Constants.Drive.kRotationsToMeters;
+import static frc.robot.Constants.Drive.kStateStdDevs;
+import static frc.robot.Constants.Logging.kCurrentEpsilon;
+import static frc.robot.Constants.Logging.kOutputEpsilon;
+import static frc.robot.Constants.Logging.kPositionEpsilon;
+import static frc.robot.Constants.Logging.kVelocityEpsilon;
+import static frc.robot.Constants.Logging.kVoltageEpsilon;
+import static frc.robot.Constants.Sampler.kBusVoltagePeriod;
+import static frc.robot.Constants.Sampler.kCurrentPeriod;
+import static frc.robot.Constants.Sampler.kOutputPeriod;
+import static frc.robot.Constants.Vision.kMaxVisionCorrection;
+import static frc.robot.Constants.Vision.kVisionStdDevs;
 
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.CANSparkMax.IdleMode;
 import com.revrobotics.CANSparkMaxLowLevel.MotorType;
+import com.revrobotics.CANSparkMaxLowLevel.PeriodicFrame;
 import com.revrobotics.RelativeEncoder;
 
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.estimator.DifferentialDrivePoseEstimator;
 import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
 import edu.wpi.first.math.kinematics.DifferentialDriveOdometry;
 import edu.wpi.first.math.kinematics.DifferentialDriveWheelSpeeds;
-import edu.wpi.first.util.datalog.DataLog;
-import edu.wpi.first.util.datalog.DoubleLogEntry;
-import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.drive.DifferentialDrive;
+import edu.wpi.first.wpilibj.drive.DifferentialDrive.WheelSpeeds;
 import edu.wpi.first.wpilibj.smartdashboard.Field2d;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.utils.CanSampler;
+import frc.robot.utils.LoopProfiler;
 import frc.robot.utils.NavX;
+import frc.robot.utils.Telemetry;
 
 public class Drive extends SubsystemBase {
-  private final NavX m_navx;
   private final CANSparkMax m_leftFront;
   private final CANSparkMax m_leftRear;
   private final CANSparkMax m_rightFront;
   private final CANSparkMax m_rightRear;
   private final DifferentialDrive m_driveTrain;
-  private final RelativeEncoder m_leftEncoder;
-  private final RelativeEncoder m_rightEncoder;
+  private final DriveSensors m_sensors;
+  private final DifferentialDrivePoseEstimator m_poseEstimator;
   private final DifferentialDriveOdometry m_odometry;
+  private final Notifier m_odometryThread;
   private final Field2d m_field = new Field2d();
-  private final DoubleLogEntry m_logLeftPosition;
-  private final DoubleLogEntry m_logLeftVelocity;
-  private final DoubleLogEntry m_logLeftFrontOutput;
-  private final DoubleLogEntry m_logLeftFrontBusVoltage;
-  private final DoubleLogEntry m_logLeftFrontCurrent;
-  private final DoubleLogEntry m_logLeftRearOutput;
-  private final DoubleLogEntry m_logLeftRearBusVoltage;
-  private final DoubleLogEntry m_logLeftRearCurrent;
-  private final DoubleLogEntry m_logRightPosition;
-  private final DoubleLogEntry m_logRightVelocity;
-  private final DoubleLogEntry m_logRightFrontOutput;
-  private final DoubleLogEntry m_logRightFrontBusVoltage;
-  private final DoubleLogEntry m_logRightFrontCurrent;
-  private final DoubleLogEntry m_logRightRearOutput;
-  private final DoubleLogEntry m_logRightRearBusVoltage;
-  private final DoubleLogEntry m_logRightRearCurrent;
+  private final boolean m_simulated = RobotBase.isSimulation();
+  private final Telemetry.Field m_logLeftPosition;
+  private final Telemetry.Field m_logLeftVelocity;
+  private final Telemetry.Field m_logRightPosition;
+  private final Telemetry.Field m_logRightVelocity;
+  private double m_leftOutput = 0;
+  private double m_rightOutput = 0;
+  private boolean m_fieldRelative = false;
 
-  public Drive(NavX navx) {
-    m_navx = navx;
+  // The odometry (the encoders and the NavX alone) is updated by the
+  // odometry thread, and the pose estimator is fed the most recent odometry
+  // update once per robot loop. The odometry poses are moved into the
+  // estimator's (vision corrected) frame by the change from the odometry
+  // pose to the estimated pose at the last update of the estimator.
+  //
+  // The recent odometry poses are kept in a history, used to find where the
+  // robot was when a camera frame was captured. All of these are shared
+  // with the odometry thread, so are only accessed while holding the lock on
+  // m_odometry.
+  private final double[] m_historyTimes = new double[kPoseHistory];
+  private final double[] m_historyX = new double[kPoseHistory];
+  private final double[] m_historyY = new double[kPoseHistory];
+  private final double[] m_historyHeadings = new double[kPoseHistory];
+  private int m_historyNext = 0;
+  private int m_historyCount = 0;
+  private double m_sampleTime = 0;
+  private Rotation2d m_sampleRotation;
+  private double m_sampleLeft = 0;
+  private double m_sampleRight = 0;
+  private Pose2d m_sampleOdometry = new Pose2d();
+  private Pose2d m_correctionOdometry = new Pose2d();
+  private Pose2d m_correctionEstimate = new Pose2d();
+
+  // The time and odometry pose of the last update of the pose estimator,
+  // which is only used by the main thread.
+  private double m_estimatorTime = Double.NEGATIVE_INFINITY;
+  private Pose2d m_estimatorOdometry = new Pose2d();
+
+  // The most recent estimate of the robot's pose. This is replaced (Pose2d
+  // is immutable) every time the estimate changes, so that it can be read
+  // from any thread without taking the lock.
+  private volatile Pose2d m_pose = new Pose2d();
 
+  private final LoopProfiler.Section m_profile =
+    LoopProfiler.section("Drive");
+  private final LoopProfiler.Section m_profileOdometry =
+    LoopProfiler.threadSection("Odometry");
+  private final LoopProfiler.Section m_profileVision =
+    LoopProfiler.section("VisionMeasurement");
+
+  public Drive(NavX navx) {
     m_leftFront = new CANSparkMax(kLeftFrontMotor, MotorType.kBrushless);
     m_leftFront.restoreFactoryDefaults();
     m_leftFront.setInverted(true);
@@ -96,63 +152,94 @@ public class Drive extends SubsystemBase {
     m_driveTrain = new DifferentialDrive(m_leftFront, m_rightFront);
     m_driveTrain.setExpiration(kMotorSafetyTime);
 
-    m_leftEncoder = m_leftRear.getEncoder();
-    m_rightEncoder = m_rightRear.getEncoder();
+    if(RobotBase.isReal()) {
+      RelativeEncoder leftEncoder = m_leftRear.getEncoder();
+      RelativeEncoder rightEncoder = m_rightRear.getEncoder();
 
-    m_leftEncoder.setPositionConversionFactor(kRotationsToMeters);
-    m_rightEncoder.setPositionConversionFactor(kRotationsToMeters);
+      leftEncoder.setPositionConversionFactor(kRotationsToMeters);
+      rightEncoder.setPositionConversionFactor(kRotationsToMeters);
 
-    m_leftEncoder.setVelocityConversionFactor(kRotationsToMeters / 60);
-    m_rightEncoder.setVelocityConversionFactor(kRotationsToMeters / 60);
+      leftEncoder.setVelocityConversionFactor(kRotationsToMeters / 60);
+      rightEncoder.setVelocityConversionFactor(kRotationsToMeters / 60);
+
+      // Have the encoders report as often as the odometry thread reads them
+      // (status 1 has the velocity and status 2 the position).
+      m_leftRear.setPeriodicFramePeriod(PeriodicFrame.kStatus1,
+                                        1000 / kOdometryRate);
+      m_leftRear.setPeriodicFramePeriod(PeriodicFrame.kStatus2,
+                                        1000 / kOdometryRate);
+      m_rightRear.setPeriodicFramePeriod(PeriodicFrame.kStatus1,
+                                         1000 / kOdometryRate);
+      m_rightRear.setPeriodicFramePeriod(PeriodicFrame.kStatus2,
+                                         1000 / kOdometryRate);
+
+      m_sensors = new RealDriveSensors(leftEncoder, rightEncoder, navx);
+    } else {
+      m_sensors = new SimDriveSensors(navx);
+    }
 
-    resetEncoders();
+    m_sensors.resetEncoders();
 
-    m_odometry = new DifferentialDriveOdometry(navx.getRotation2d());
+    m_sampleRotation = m_sensors.getRotation2d();
+    m_odometry = new DifferentialDriveOdometry(m_sampleRotation, m_pose);
+    m_poseEstimator =
+      new DifferentialDrivePoseEstimator(m_sampleRotation, m_pose,
+                                         kStateStdDevs, kLocalStdDevs,
+                                         kVisionStdDevs);
     SmartDashboard.putData("Field", m_field);
 
     if(kEnableDetailedLogging) {
-      DataLog log = DataLogManager.getLog();
-      m_logLeftPosition = new DoubleLogEntry(log, "drive/leftPosition");
-      m_logLeftVelocity = new DoubleLogEntry(log, "drive/leftVelocity");
-      m_logLeftFrontOutput = new DoubleLogEntry(log, "/drive/leftFrontOutput");
-      m_logLeftFrontBusVoltage =
-        new DoubleLogEntry(log, "/drive/leftFrontBusVoltage");
-      m_logLeftFrontCurrent =
-        new DoubleLogEntry(log, "/drive/leftFrontCurrent");
-      m_logLeftRearOutput = new DoubleLogEntry(log, "/drive/leftRearOutput");
-      m_logLeftRearBusVoltage =
-        new DoubleLogEntry(log, "/drive/leftRearBusVoltage");
-      m_logLeftRearCurrent = new DoubleLogEntry(log, "/drive/leftRearCurrent");
-      m_logRightPosition = new DoubleLogEntry(log, "drive/rightPosition");
-      m_logRightVelocity = new DoubleLogEntry(log, "drive/rightVelocity");
-      m_logRightFrontOutput =
-        new DoubleLogEntry(log, "/drive/rightFrontOutput");
-      m_logRightFrontBusVoltage =
-        new DoubleLogEntry(log, "/drive/rightFrontBusVoltage");
-      m_logRightFrontCurrent =
-        new DoubleLogEntry(log, "/drive/rightFrontCurrent");
-      m_logRightRearOutput = new DoubleLogEntry(log, "/drive/rightRearOutput");
-      m_logRightRearBusVoltage =
-        new DoubleLogEntry(log, "/drive/rightRearBusVoltage");
-      m_logRightRearCurrent =
-        new DoubleLogEntry(log, "/drive/rightRearCurrent");
+      Telemetry.Frame frame = Telemetry.frame("/drive");
+      m_logLeftPosition = frame.field("leftPosition", kPositionEpsilon);
+      m_logLeftVelocity = frame.field("leftVelocity", kVelocityEpsilon);
+      CanSampler.signal(m_leftFront::getAppliedOutput, kOutputPeriod,
+                        frame.field("leftFrontOutput", kOutputEpsilon));
+      CanSampler.signal(m_leftRear::getAppliedOutput, kOutputPeriod,
+                        frame.field("leftRearOutput", kOutputEpsilon));
+      m_logRightPosition = frame.field("rightPosition", kPositionEpsilon);
+      m_logRightVelocity = frame.field("rightVelocity", kVelocityEpsilon);
+      CanSampler.signal(m_rightFront::getAppliedOutput, kOutputPeriod,
+                        frame.field("rightFrontOutput", kOutputEpsilon));
+      CanSampler.signal(m_rightRear::getAppliedOutput, kOutputPeriod,
+                        frame.field("rightRearOutput", kOutputEpsilon));
+
+      // The bus voltages and currents barely change while the robot is
+      // idle, so they are kept out of the frame above, which would otherwise
+      // be written whenever any one of them moved.
+      Telemetry.Frame power = Telemetry.frame("/drive/power");
+      CanSampler.signal(m_leftFront::getBusVoltage, kBusVoltagePeriod,
+                        power.field("leftFrontBusVoltage", kVoltageEpsilon));
+      CanSampler.signal(m_leftFront::getOutputCurrent, kCurrentPeriod,
+                        power.field("leftFrontCurrent", kCurrentEpsilon));
+      CanSampler.signal(m_leftRear::getBusVoltage, kBusVoltagePeriod,
+                        power.field("leftRearBusVoltage", kVoltageEpsilon));
+      CanSampler.signal(m_leftRear::getOutputCurrent, kCurrentPeriod,
+                        power.field("leftRearCurrent", kCurrentEpsilon));
+      CanSampler.signal(m_rightFront::getBusVoltage, kBusVoltagePeriod,
+                        power.field("rightFrontBusVoltage", kVoltageEpsilon));
+      CanSampler.signal(m_rightFront::getOutputCurrent, kCurrentPeriod,
+                        power.field("rightFrontCurrent", kCurrentEpsilon));
+      CanSampler.signal(m_rightRear::getBusVoltage, kBusVoltagePeriod,
+                        power.field("rightRearBusVoltage", kVoltageEpsilon));
+      CanSampler.signal(m_rightRear::getOutputCurrent, kCurrentPeriod,
+                        power.field("rightRearCurrent", kCurrentEpsilon));
     } else {
       m_logLeftPosition = null;
       m_logLeftVelocity = null;
-      m_logLeftFrontOutput = null;
-      m_logLeftFrontBusVoltage = null;
-      m_logLeftFrontCurrent = null;
-      m_logLeftRearOutput = null;
-      m_logLeftRearBusVoltage = null;
-      m_logLeftRearCurrent = null;
       m_logRightPosition = null;
       m_logRightVelocity = null;
-      m_logRightFrontOutput = null;
-      m_logRightFrontBusVoltage = null;
-      m_logRightFrontCurrent = null;
-      m_logRightRearOutput = null;
-      m_logRightRearBusVoltage = null;
-      m_logRightRearCurrent = null;
+    }
+
+    // On the robot, the odometry is updated by its own thread, so that the
+    // updates are evenly spaced and can run faster than the robot loop. The
+    // simulated drive train only moves once per loop, so in simulation the
+    // odometry is updated by periodic() instead.
+    if(RobotBase.isReal()) {
+      m_odometryThread = new Notifier(this::updateOdometry);
+      m_odometryThread.setName("Odometry");
+      m_odometryThread.startPeriodic(1.0 / kOdometryRate);
+    } else {
+      m_odometryThread = null;
     }
   }
 
@@ -166,56 +253,312 @@ public class Drive extends SubsystemBase {
 
   public void arcadeDrive(double speed, double rotation) {
     m_driveTrain.arcadeDrive(speed, rotation);
+
+    // Track the output of each side for the simulation, in the same way
+    // that DifferentialDrive computes it (with the default deadband and
+    // squared inputs).
+    if(m_simulated) {
+      WheelSpeeds speeds =
+        DifferentialDrive.arcadeDriveIK(
+          MathUtil.applyDeadband(speed, DifferentialDrive.kDefaultDeadband),
+          MathUtil.applyDeadband(rotation, DifferentialDrive.kDefaultDeadband),
+          true);
+      double volts = RobotController.getBatteryVoltage();
+      m_leftOutput = speeds.left * volts;
+      m_rightOutput = speeds.right * volts;
+    }
   }
 
   @Override
   public void periodic() {
-    m_odometry.update(m_navx.getRotation2d(), m_leftEncoder.getPosition(),
-                      m_rightEncoder.getPosition());
-    m_field.setRobotPose(m_odometry.getPoseMeters());
+    m_profile.start();
+
+    if(m_odometryThread == null) {
+      updateOdometry();
+    }
+    updateEstimator();
+    m_field.setRobotPose(m_pose);
 
     if(kEnableDetailedLogging) {
-      m_logLeftPosition.append(m_leftEncoder.getPosition());
-      m_logLeftVelocity.append(m_leftEncoder.getVelocity());
-      m_logLeftFrontOutput.append(m_leftFront.getAppliedOutput());
-      m_logLeftFrontBusVoltage.append(m_leftFront.getBusVoltage());
-      m_logLeftFrontCurrent.append(m_leftFront.getOutputCurrent());
-      m_logLeftRearOutput.append(m_leftRear.getAppliedOutput());
-      m_logLeftRearBusVoltage.append(m_leftRear.getBusVoltage());
-      m_logLeftRearCurrent.append(m_leftRear.getOutputCurrent());
-      m_logRightPosition.append(m_rightEncoder.getPosition());
-      m_logRightVelocity.append(m_rightEncoder.getVelocity());
-      m_logRightFrontOutput.append(m_rightFront.getAppliedOutput());
-      m_logRightFrontBusVoltage.append(m_rightFront.getBusVoltage());
-      m_logRightFrontCurrent.append(m_rightFront.getOutputCurrent());
-      m_logRightRearOutput.append(m_rightRear.getAppliedOutput());
-      m_logRightRearBusVoltage.append(m_rightRear.getBusVoltage());
-      m_logRightRearCurrent.append(m_rightRear.getOutputCurrent());
+      m_logLeftPosition.set(m_sensors.getLeftPosition());
+      m_logLeftVelocity.set(m_sensors.getLeftVelocity());
+      m_logRightPosition.set(m_sensors.getRightPosition());
+      m_logRightVelocity.set(m_sensors.getRightVelocity());
+    }
+
+    m_profile.stop();
+  }
+
+  /**
+   * Updates the odometry from the encoders and the NavX, and adds it to the
+   * pose history. This runs on the odometry thread.
+   */
+  private void updateOdometry() {
+    m_profileOdometry.start();
+
+    double now = Timer.getFPGATimestamp();
+
+    // The sensors are read while holding the lock, so that a reset of the
+    // encoders can not happen between reading them and updating the pose.
+    synchronized(m_odometry) {
+      Rotation2d rotation = m_sensors.getRotation2d();
+      double left = m_sensors.getLeftPosition();
+      double right = m_sensors.getRightPosition();
+      Pose2d pose = m_odometry.update(rotation, left, right);
+
+      m_sampleTime = now;
+      m_sampleRotation = rotation;
+      m_sampleLeft = left;
+      m_sampleRight = right;
+      m_sampleOdometry = pose;
+
+      m_historyTimes[m_historyNext] = now;
+      m_historyX[m_historyNext] = pose.getX();
+      m_historyY[m_historyNext] = pose.getY();
+      m_historyHeadings[m_historyNext] = pose.getRotation().getRadians();
+      m_historyNext = (m_historyNext + 1) % kPoseHistory;
+      if(m_historyCount < kPoseHistory) {
+        m_historyCount++;
+      }
+
+      m_pose = correct(pose);
+    }
+
+    m_profileOdometry.stop();
+  }
+
+  /**
+   * Feeds the most recent odometry update to the pose estimator. The
+   * estimator is too costly to run at the odometry rate, so it is updated
+   * once per robot loop instead.
+   */
+  private void updateEstimator() {
+    double time;
+    Rotation2d rotation;
+    double left;
+    double right;
+    Pose2d odometry;
+
+    synchronized(m_odometry) {
+      time = m_sampleTime;
+      rotation = m_sampleRotation;
+      left = m_sampleLeft;
+      right = m_sampleRight;
+      odometry = m_sampleOdometry;
+    }
+
+    if(time <= m_estimatorTime) {
+      return;
+    }
+
+    Pose2d estimate =
+      m_poseEstimator.updateWithTime(time, rotation, getWheelSpeeds(), left,
+                                     right);
+    m_estimatorTime = time;
+    m_estimatorOdometry = odometry;
+    setCorrection(odometry, estimate);
+  }
+
+  /**
+   * Sets the correction that moves the odometry poses into the estimator's
+   * frame.
+   *
+   * @param odometry is the odometry pose at the last update of the pose
+   *                 estimator.
+   *
+   * @param estimate is the estimated pose at that time.
+   */
+  private void setCorrection(Pose2d odometry, Pose2d estimate) {
+    synchronized(m_odometry) {
+      m_correctionOdometry = odometry;
+      m_correctionEstimate = estimate;
+      m_pose = correct(m_sampleOdometry);
     }
   }
 
+  /**
+   * Moves an odometry pose into the estimator's frame, by applying the
+   * motion since the last update of the pose estimator to the estimated pose
+   * then. This must be called while holding the lock on m_odometry.
+   *
+   * @param pose is the odometry pose.
+   *
+   * @return the estimated pose.
+   */
+  private Pose2d correct(Pose2d pose) {
+    return m_correctionEstimate.transformBy(
+      new Transform2d(m_correctionOdometry, pose));
+  }
+
+  @Override
+  public void simulationPeriodic() {
+    // The motor controllers do not drive the motors while the robot is
+    // disabled.
+    if(DriverStation.isDisabled()) {
+      m_leftOutput = 0;
+      m_rightOutput = 0;
+    }
+
+    m_sensors.simulate(m_leftOutput, m_rightOutput, 0.02);
+  }
+
+  /**
+   * Gets the estimated pose of the robot. This is safe to call from any
+   * thread.
+   *
+   * @return the estimated pose, as of the most recent update.
+   */
   public Pose2d getPose() {
-    return m_odometry.getPoseMeters();
+    return m_pose;
+  }
+
+  /**
+   * Gets the estimated pose of the robot at a time in the recent past, by
+   * interpolating between the poses in the pose history. Times outside of
+   * the history use the oldest or newest pose.
+   *
+   * @param time is the FPGA time, in seconds.
+   *
+   * @return the estimated pose of the robot at that time.
+   */
+  public Pose2d getPoseAt(double time) {
+    synchronized(m_odometry) {
+      if(m_historyCount == 0) {
+        return m_pose;
+      }
+
+      int newer = (m_historyNext + kPoseHistory - 1) % kPoseHistory;
+      if(time >= m_historyTimes[newer]) {
+        return historyPose(newer, newer, 0);
+      }
+
+      for(int i = 1; i < m_historyCount; i++) {
+        int older = (newer + kPoseHistory - 1) % kPoseHistory;
+
+        if(time >= m_historyTimes[older]) {
+          return historyPose(older, newer,
+                             (time - m_historyTimes[older]) /
+                             (m_historyTimes[newer] - m_historyTimes[older]));
+        }
+
+        newer = older;
+      }
+
+      return historyPose(newer, newer, 0);
+    }
+  }
+
+  /**
+   * Interpolates between two poses in the pose history, and moves the result
+   * into the estimator's frame. This must be called while holding the lock
+   * on m_odometry.
+   *
+   * @param older is the index of the older pose.
+   *
+   * @param newer is the index of the newer pose.
+   *
+   * @param fraction is the fraction of the way from the older pose to the
+   *                 newer pose.
+   *
+   * @return the interpolated pose.
+   */
+  private Pose2d historyPose(int older, int newer, double fraction) {
+    double heading = m_historyHeadings[older] +
+      (MathUtil.angleModulus(m_historyHeadings[newer] -
+                             m_historyHeadings[older]) * fraction);
+
+    return correct(
+      new Pose2d(m_historyX[older] +
+                 ((m_historyX[newer] - m_historyX[older]) * fraction),
+                 m_historyY[older] +
+                 ((m_historyY[newer] - m_historyY[older]) * fraction),
+                 new Rotation2d(heading)));
   }
 
   public void resetEncoders() {
-    m_leftEncoder.setPosition(0);
-    m_rightEncoder.setPosition(0);
+    resetPose(m_pose);
   }
 
   public void resetOdometry(Pose2d pose) {
-    resetEncoders();
-    m_odometry.resetPosition(pose, m_navx.getRotation2d());
+    resetPose(pose);
+    m_fieldRelative = true;
+  }
+
+  /**
+   * Resets the encoders, and restarts the odometry and the pose estimator
+   * from a pose.
+   *
+   * @param pose is the pose of the robot.
+   */
+  private void resetPose(Pose2d pose) {
+    Rotation2d rotation;
+    double now = Timer.getFPGATimestamp();
+
+    synchronized(m_odometry) {
+      m_sensors.resetEncoders();
+      rotation = m_sensors.getRotation2d();
+      m_odometry.resetPosition(pose, rotation);
+
+      m_sampleTime = now;
+      m_sampleRotation = rotation;
+      m_sampleLeft = 0;
+      m_sampleRight = 0;
+      m_sampleOdometry = pose;
+      m_correctionOdometry = pose;
+      m_correctionEstimate = pose;
+      m_historyCount = 0;
+      m_pose = pose;
+    }
+
+    m_poseEstimator.resetPosition(pose, rotation);
+    m_estimatorTime = now;
+    m_estimatorOdometry = pose;
+  }
+
+  /**
+   * Corrects the estimated pose with a pose of the robot measured by the
+   * vision system. Measurements are ignored until the pose has been reset to
+   * a known position on the field (at the start of autonomous), since until
+   * then the estimated heading is not aligned with the field.
+   *
+   * @param pose is the measured pose of the robot.
+   *
+   * @param timestamp is the FPGA time at which the camera frame that the
+   *                  pose was measured from was captured, in seconds.
+   */
+  public void addVisionMeasurement(Pose2d pose, double timestamp) {
+    if(!m_fieldRelative ||
+       (m_pose.getTranslation().getDistance(pose.getTranslation()) >
+        kMaxVisionCorrection)) {
+      return;
+    }
+
+    m_profileVision.start();
+    m_poseEstimator.addVisionMeasurement(pose, timestamp);
+    setCorrection(m_estimatorOdometry,
+                  m_poseEstimator.getEstimatedPosition());
+    m_profileVision.stop();
   }
 
   public DifferentialDriveWheelSpeeds getWheelSpeeds() {
-    return new DifferentialDriveWheelSpeeds(m_leftEncoder.getVelocity(),
-                                            m_rightEncoder.getVelocity());
+    return new DifferentialDriveWheelSpeeds(m_sensors.getLeftVelocity(),
+                                            m_sensors.getRightVelocity());
+  }
+
+  public double getLeftVelocity() {
+    return m_sensors.getLeftVelocity();
+  }
+
+  public double getRightVelocity() {
+    return m_sensors.getRightVelocity();
   }
 
   public void driveTankVolts(double leftVolts, double rightVolts) {
     m_leftFront.setVoltage(leftVolts);
     m_rightFront.setVoltage(rightVolts);
     m_driveTrain.feed();
+
+    m_leftOutput = leftVolts;
+    m_rightOutput = rightVolts;
   }
 }
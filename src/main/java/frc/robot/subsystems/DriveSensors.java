@@ -0,0 +1,69 @@
+// Copyright (c) 2022 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * The sensors that the drive subsystem uses to track the robot: the wheel
+ * encoders and the heading from the NavX. On the robot these are read from
+ * the hardware ({@link RealDriveSensors}); in simulation they come from a
+ * physics model of the drive train ({@link SimDriveSensors}).
+ */
+public interface DriveSensors {
+  /**
+   * Gets the distance travelled by the left wheels.
+   *
+   * @return the distance, in meters.
+   */
+  double getLeftPosition();
+
+  /**
+   * Gets the distance travelled by the right wheels.
+   *
+   * @return the distance, in meters.
+   */
+  double getRightPosition();
+
+  /**
+   * Gets the velocity of the left wheels.
+   *
+   * @return the velocity, in meters per second.
+   */
+  double getLeftVelocity();
+
+  /**
+   * Gets the velocity of the right wheels.
+   *
+   * @return the velocity, in meters per second.
+   */
+  double getRightVelocity();
+
+  /**
+   * Gets the heading of the robot.
+   *
+   * @return the heading, counter-clockwise positive.
+   */
+  Rotation2d getRotation2d();
+
+  /**
+   * Resets the distance travelled by both sides to zero.
+   */
+  void resetEncoders();
+
+  /**
+   * Advances the simulation of the drive train. This does nothing on the
+   * robot.
+   *
+   * @param leftVolts is the voltage applied to the left motors.
+   *
+   * @param rightVolts is the voltage applied to the right motors.
+   *
+   * @param dt is the time to advance, in seconds.
+   */
+  default void simulate(double leftVolts, double rightVolts, double dt) {
+  }
+}
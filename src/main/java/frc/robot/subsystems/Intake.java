@@ -10,27 +10,28 @@ import static frc.robot.Constants.Intake.kCurrentLimit;
 import static frc.robot.Constants.Intake.kMaxSpeed;
 import static frc.robot.Constants.Intake.kMotor;
 import static frc.robot.Constants.Intake.kSolenoid;
+import static frc.robot.Constants.Logging.kCurrentEpsilon;
+import static frc.robot.Constants.Logging.kOutputEpsilon;
+import static frc.robot.Constants.Logging.kVoltageEpsilon;
+import static frc.robot.Constants.Sampler.kBusVoltagePeriod;
+import static frc.robot.Constants.Sampler.kCurrentPeriod;
+import static frc.robot.Constants.Sampler.kOutputPeriod;
 
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.CANSparkMax.IdleMode;
 import com.revrobotics.CANSparkMaxLowLevel.MotorType;
 
-import edu.wpi.first.util.datalog.BooleanLogEntry;
-import edu.wpi.first.util.datalog.DataLog;
-import edu.wpi.first.util.datalog.DoubleLogEntry;
 import edu.wpi.first.util.sendable.SendableBuilder;
-import edu.wpi.first.wpilibj.DataLogManager;
 import edu.wpi.first.wpilibj.PneumaticsModuleType;
 import edu.wpi.first.wpilibj.Solenoid;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.utils.CanSampler;
+import frc.robot.utils.Telemetry;
 
 public class Intake extends SubsystemBase {
   private final CANSparkMax m_intake;
   private final Solenoid m_solenoid;
-  private final DoubleLogEntry m_logOutput;
-  private final DoubleLogEntry m_logBusVoltage;
-  private final DoubleLogEntry m_logCurrent;
-  private final BooleanLogEntry m_logSolenoid;
+  private final Telemetry.Field m_logSolenoid;
   private boolean shootExtend = false;
   private boolean buttonExtend = false;
   //private int counter = 0;
@@ -45,28 +46,21 @@ public class Intake extends SubsystemBase {
     m_solenoid = new Solenoid(PneumaticsModuleType.REVPH, kSolenoid);
 
     if(kEnableDetailedLogging) {
-      DataLog log = DataLogManager.getLog();
-      m_logOutput = new DoubleLogEntry(log, "/intake/output");
-      m_logBusVoltage = new DoubleLogEntry(log, "/intake/busVoltage");
-      m_logCurrent = new DoubleLogEntry(log, "/intake/current");
-      m_logSolenoid = new BooleanLogEntry(log, "/intake/solenoid");
+      Telemetry.Frame frame = Telemetry.frame("/intake");
+      CanSampler.signal(m_intake::getAppliedOutput, kOutputPeriod,
+                        frame.field("output", kOutputEpsilon));
+      m_logSolenoid = frame.field("solenoid");
+
+      Telemetry.Frame power = Telemetry.frame("/intake/power");
+      CanSampler.signal(m_intake::getBusVoltage, kBusVoltagePeriod,
+                        power.field("busVoltage", kVoltageEpsilon));
+      CanSampler.signal(m_intake::getOutputCurrent, kCurrentPeriod,
+                        power.field("current", kCurrentEpsilon));
     } else {
-      m_logOutput = null;
-      m_logBusVoltage = null;
-      m_logCurrent = null;
       m_logSolenoid = null;
     }
   }
 
-  @Override
-  public void periodic() {
-    if(kEnableDetailedLogging) {
-      m_logOutput.append(m_intake.getAppliedOutput());
-      m_logBusVoltage.append(m_intake.getBusVoltage());
-      m_logCurrent.append(m_intake.getOutputCurrent());
-    }
-  }
-
   public void reset() {
     run(0.0);
     shootExtend = false;
@@ -89,7 +83,7 @@ public class Intake extends SubsystemBase {
     buttonExtend = true;
       m_solenoid.set(true);
       if(kEnableDetailedLogging) {
-        m_logSolenoid.append(m_solenoid.get());
+        m_logSolenoid.set(m_solenoid.get());
       }
   }
 
@@ -98,7 +92,7 @@ public class Intake extends SubsystemBase {
       if(shootExtend == false){
               m_solenoid.set(false);
       if(kEnableDetailedLogging) {
-        m_logSolenoid.append(m_solenoid.get());
+        m_logSolenoid.set(m_solenoid.get());
       }
     }
   }
@@ -107,7 +101,7 @@ public class Intake extends SubsystemBase {
     shootExtend = true;
       m_solenoid.set(true);
       if(kEnableDetailedLogging) {
-        m_logSolenoid.append(m_solenoid.get());
+        m_logSolenoid.set(m_solenoid.get());
       }
   }
 
@@ -116,7 +110,7 @@ public class Intake extends SubsystemBase {
       if(buttonExtend == false){
               m_solenoid.set(false);
       if(kEnableDetailedLogging) {
-        m_logSolenoid.append(m_solenoid.get());
+        m_logSolenoid.set(m_solenoid.get());
       }
     }
   }
@@ -6,32 +6,24 @@
 package frc.robot.subsystems;
 
 import static frc.robot.Constants.kEnableDetailedLogging;
+import static frc.robot.Constants.Logging.kCurrentEpsilon;
+import static frc.robot.Constants.Sampler.kCurrentPeriod;
 
-import edu.wpi.first.util.datalog.DataLog;
-import edu.wpi.first.util.datalog.DoubleLogEntry;
-import edu.wpi.first.wpilibj.DataLogManager;
 import edu.wpi.first.wpilibj.PneumaticHub;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.utils.CanSampler;
+import frc.robot.utils.Telemetry;
 
 public class Pneumatics extends SubsystemBase {
   private final PneumaticHub m_ph = new PneumaticHub();
-  private final DoubleLogEntry m_logCurrent;
 
   /** Creates a new Pnuematics subsystem. */
   public Pneumatics() {
     m_ph.enableCompressorDigital();
     if(kEnableDetailedLogging) {
-      DataLog log = DataLogManager.getLog();
-      m_logCurrent = new DoubleLogEntry(log, "/pneumatics/compressorCurrent");
-    } else {
-      m_logCurrent = null;
-    }
-  }
-
-  @Override
-  public void periodic() {
-    if(kEnableDetailedLogging) {
-      m_logCurrent.append(m_ph.getCompressorCurrent());
+      Telemetry.Frame frame = Telemetry.frame("/pneumatics");
+      CanSampler.signal(m_ph::getCompressorCurrent, kCurrentPeriod,
+                        frame.field("compressorCurrent", kCurrentEpsilon));
     }
   }
 }
@@ -6,16 +6,18 @@
 package frc.robot.subsystems;
 
 import static frc.robot.Constants.kEnableDetailedLogging;
+import static frc.robot.Constants.Logging.kCurrentEpsilon;
+import static frc.robot.Constants.Sampler.kCurrentPeriod;
 
-import edu.wpi.first.util.datalog.DataLog;
-import edu.wpi.first.util.datalog.DoubleLogEntry;
 import edu.wpi.first.wpilibj.AddressableLED;
 import edu.wpi.first.wpilibj.AddressableLEDBuffer;
-import edu.wpi.first.wpilibj.DataLogManager;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.PowerDistribution;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.utils.CanSampler;
+import frc.robot.utils.LoopProfiler;
+import frc.robot.utils.Telemetry;
 
 /*
  * Addressable LEDs are connected to PWM channel 5 on the RoboRIO. There 146
@@ -91,7 +93,6 @@ public class PrettyLights extends SubsystemBase {
   private final AddressableLED m_led;
   private final AddressableLEDBuffer m_ledBuffer;
   private final AddressableLEDBuffer m_ledBuffer2;
-  private final DoubleLogEntry m_logCurrent;
   private int m_prevRing = m_black;
   private int m_prevColor = m_black;
   private int m_color = m_pink;
@@ -126,6 +127,9 @@ public class PrettyLights extends SubsystemBase {
       0x3f }
   };
 
+  private final LoopProfiler.Section m_profile =
+    LoopProfiler.section("PrettyLights");
+
   /** Creates a new PrettyLights. */
   public PrettyLights(PowerDistribution powerHub) {
     m_powerHub = powerHub;
@@ -138,10 +142,9 @@ public class PrettyLights extends SubsystemBase {
     m_led.start();
 
     if(kEnableDetailedLogging) {
-      DataLog log = DataLogManager.getLog();
-      m_logCurrent = new DoubleLogEntry(log, "/prettyLights/current");
-    } else {
-      m_logCurrent = null;
+      Telemetry.Frame frame = Telemetry.frame("/prettyLights");
+      CanSampler.signal(() -> m_powerHub.getCurrent(11), kCurrentPeriod,
+                        frame.field("current", kCurrentEpsilon));
     }
 
     SmartDashboard.setDefaultBoolean(ENABLE_RING_LIGHT, false);
@@ -317,6 +320,8 @@ public class PrettyLights extends SubsystemBase {
 
   @Override
   public void periodic() {
+    m_profile.start();
+
     boolean bUpdate = false;
 
     // Set the ring light based on the robot enable state.
@@ -386,10 +391,7 @@ public class PrettyLights extends SubsystemBase {
       m_led.setData(m_ledBuffer);
     }
 
-    // Log the current used by the LEDs.
-    if(kEnableDetailedLogging) {
-      m_logCurrent.append(m_powerHub.getCurrent(11));
-    }
+    m_profile.stop();
   }
 
   public void defaultColor() {
@@ -0,0 +1,70 @@
+// Copyright (c) 2022 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import com.revrobotics.RelativeEncoder;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import frc.robot.utils.NavX;
+
+/**
+ * The drive sensors of the robot, read from the SPARK MAX encoders and the
+ * NavX.
+ */
+public class RealDriveSensors implements DriveSensors {
+  private final RelativeEncoder m_leftEncoder;
+  private final RelativeEncoder m_rightEncoder;
+  private final NavX m_navx;
+
+  /**
+   * Creates a new RealDriveSensors.
+   *
+   * @param leftEncoder is the encoder of the left side, which must already
+   *                    be configured to measure in meters.
+   *
+   * @param rightEncoder is the encoder of the right side, which must already
+   *                     be configured to measure in meters.
+   *
+   * @param navx is the NavX.
+   */
+  public RealDriveSensors(RelativeEncoder leftEncoder,
+                          RelativeEncoder rightEncoder, NavX navx) {
+    m_leftEncoder = leftEncoder;
+    m_rightEncoder = rightEncoder;
+    m_navx = navx;
+  }
+
+  @Override
+  public double getLeftPosition() {
+    return m_leftEncoder.getPosition();
+  }
+
+  @Override
+  public double getRightPosition() {
+    return m_rightEncoder.getPosition();
+  }
+
+  @Override
+  public double getLeftVelocity() {
+    return m_leftEncoder.getVelocity();
+  }
+
+  @Override
+  public double getRightVelocity() {
+    return m_rightEncoder.getVelocity();
+  }
+
+  @Override
+  public Rotation2d getRotation2d() {
+    return m_navx.getRotation2d();
+  }
+
+  @Override
+  public void resetEncoders() {
+    m_leftEncoder.setPosition(0);
+    m_rightEncoder.setPosition(0);
+  }
+}
@@ -17,9 +17,18 @@ import static frc.robot.Constants.Catapult.kResetVoltage;
 import static frc.robot.Constants.Catapult.kReverseLimit;
 import static frc.robot.Constants.Catapult.kRightMotor;
 import static frc.robot.Constants.Catapult.kShootVoltage;
+import static frc.robot.Constants.Catapult.kSimSpeed;
+import static frc.robot.Constants.Logging.kCurrentEpsilon;
+import static frc.robot.Constants.Logging.kOutputEpsilon;
+import static frc.robot.Constants.Logging.kPositionEpsilon;
+import static frc.robot.Constants.Logging.kVoltageEpsilon;
+import static frc.robot.Constants.Sampler.kBusVoltagePeriod;
+import static frc.robot.Constants.Sampler.kCurrentPeriod;
+import static frc.robot.Constants.Sampler.kOutputPeriod;
 
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.CANSparkMax.IdleMode;
+import com.revrobotics.CANSparkMax.SoftLimitDirection;
 import com.revrobotics.CANSparkMaxLowLevel.MotorType;
 import com.revrobotics.ColorMatch;
 import com.revrobotics.ColorMatchResult;
@@ -27,16 +36,16 @@ import com.revrobotics.ColorSensorV3;
 import com.revrobotics.RelativeEncoder;
 
 import edu.wpi.first.math.filter.Debouncer;
-import edu.wpi.first.util.datalog.DataLog;
-import edu.wpi.first.util.datalog.DoubleLogEntry;
 import edu.wpi.first.util.sendable.SendableBuilder;
-import edu.wpi.first.wpilibj.DataLogManager;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj.I2C.Port;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj.util.Color;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.utils.CanSampler;
+import frc.robot.utils.LoopProfiler;
+import frc.robot.utils.Telemetry;
 
 public class RightCatapult extends SubsystemBase {
   private final CANSparkMax m_catapult;
@@ -47,13 +56,14 @@ public class RightCatapult extends SubsystemBase {
   private boolean m_cargoIsBlue;
   private final Debouncer m_correctDebouncer;
   private final Debouncer m_incorrectDebouncer;
-  private final DoubleLogEntry m_logPosition;
-  private final DoubleLogEntry m_logOutput;
-  private final DoubleLogEntry m_logBusVoltage;
-  private final DoubleLogEntry m_logCurrent;
+  private final Telemetry.Field m_logPosition;
   private final VisionTracking m_vision;
+  private double m_voltage = 0;
   public double limit;
 
+  private final LoopProfiler.Section m_profile =
+    LoopProfiler.section("RightCatapult");
+
   public RightCatapult(VisionTracking vision) {
     m_vision = vision;
     m_catapult = new CANSparkMax(kRightMotor, MotorType.kBrushless);
@@ -82,16 +92,18 @@ public class RightCatapult extends SubsystemBase {
     m_incorrectDebouncer = new Debouncer(0.1, Debouncer.DebounceType.kBoth);
 
     if(kEnableDetailedLogging) {
-      DataLog log = DataLogManager.getLog();
-      m_logPosition = new DoubleLogEntry(log, "/rightCatapult/position");
-      m_logOutput = new DoubleLogEntry(log, "/rightCatapult/output");
-      m_logBusVoltage = new DoubleLogEntry(log, "/rightCatapult/busVoltage");
-      m_logCurrent = new DoubleLogEntry(log, "/rightCatapult/current");
+      Telemetry.Frame frame = Telemetry.frame("/rightCatapult");
+      m_logPosition = frame.field("position", kPositionEpsilon);
+      CanSampler.signal(m_catapult::getAppliedOutput, kOutputPeriod,
+                        frame.field("output", kOutputEpsilon));
+
+      Telemetry.Frame power = Telemetry.frame("/rightCatapult/power");
+      CanSampler.signal(m_catapult::getBusVoltage, kBusVoltagePeriod,
+                        power.field("busVoltage", kVoltageEpsilon));
+      CanSampler.signal(m_catapult::getOutputCurrent, kCurrentPeriod,
+                        power.field("current", kCurrentEpsilon));
     } else {
       m_logPosition = null;
-      m_logOutput = null;
-      m_logBusVoltage = null;
-      m_logCurrent = null;
     }
   }
 
@@ -127,6 +139,7 @@ public class RightCatapult extends SubsystemBase {
 
   public void run(double voltage) {
     m_catapult.setVoltage(voltage);
+    m_voltage = voltage;
   }
 
   public void score() {
@@ -189,6 +202,8 @@ public class RightCatapult extends SubsystemBase {
 
   @Override
   public void periodic() {
+    m_profile.start();
+
     Color detectedColor;
     int distance;
 
@@ -220,11 +235,27 @@ public class RightCatapult extends SubsystemBase {
     }
 
     if(kEnableDetailedLogging) {
-      m_logPosition.append(m_encoder.getPosition());
-      m_logOutput.append(m_catapult.getAppliedOutput());
-      m_logBusVoltage.append(m_catapult.getBusVoltage());
-      m_logCurrent.append(m_catapult.getOutputCurrent());
+      m_logPosition.set(m_encoder.getPosition());
+    }
+
+    m_profile.stop();
+  }
+
+  @Override
+  public void simulationPeriodic() {
+    // Turn the motor at a speed proportional to the applied voltage, stopping
+    // at the soft limits just like the SPARK MAX does.
+    double position = m_encoder.getPosition() +
+      ((m_voltage / 12.0) * kSimSpeed * 0.02);
+    if(m_catapult.isSoftLimitEnabled(SoftLimitDirection.kForward)) {
+      position = Math.min(position,
+                          m_catapult.getSoftLimit(SoftLimitDirection.kForward));
+    }
+    if(m_catapult.isSoftLimitEnabled(SoftLimitDirection.kReverse)) {
+      position = Math.max(position,
+                          m_catapult.getSoftLimit(SoftLimitDirection.kReverse));
     }
+    m_encoder.setPosition(position);
   }
 
   @Override
@@ -0,0 +1,121 @@
+// Copyright (c) 2022 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import static frc.robot.Constants.Drive.kGearing;
+import static frc.robot.Constants.Drive.kTrackWidth;
+import static frc.robot.Constants.Drive.kWheelDiameter;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.wpilibj.simulation.DifferentialDrivetrainSim;
+import frc.robot.utils.DriveGains;
+import frc.robot.utils.NavX;
+
+/**
+ * The drive sensors of a simulated robot. The drive train is modelled by
+ * WPILib's DifferentialDrivetrainSim, using the characterization of the real
+ * drive train from {@link DriveGains} (kV and kA, plus kS, which the model
+ * does not include and so is applied here as a friction voltage). The
+ * simulated heading is fed into the NavX, so that everything else that reads
+ * the NavX sees the robot turn.
+ */
+public class SimDriveSensors implements DriveSensors {
+  private final NavX m_navx;
+  private final DifferentialDrivetrainSim m_sim;
+  private final double m_ks;
+  private double m_leftOffset = 0;
+  private double m_rightOffset = 0;
+  private double m_angle = 0;
+  private double m_lastHeading = 0;
+
+  /**
+   * Creates a new SimDriveSensors.
+   *
+   * @param navx is the NavX, which is given the simulated heading.
+   */
+  public SimDriveSensors(NavX navx) {
+    DriveGains gains = DriveGains.get();
+
+    m_navx = navx;
+    m_ks = gains.getKS();
+    m_sim = new DifferentialDrivetrainSim(
+      LinearSystemId.identifyDrivetrainSystem(gains.getKV(), gains.getKA(),
+                                              gains.getKVAngular(),
+                                              gains.getKAAngular(),
+                                              kTrackWidth),
+      DCMotor.getNEO(2), kGearing, kTrackWidth, kWheelDiameter / 2, null);
+  }
+
+  @Override
+  public double getLeftPosition() {
+    return m_sim.getLeftPositionMeters() - m_leftOffset;
+  }
+
+  @Override
+  public double getRightPosition() {
+    return m_sim.getRightPositionMeters() - m_rightOffset;
+  }
+
+  @Override
+  public double getLeftVelocity() {
+    return m_sim.getLeftVelocityMetersPerSecond();
+  }
+
+  @Override
+  public double getRightVelocity() {
+    return m_sim.getRightVelocityMetersPerSecond();
+  }
+
+  @Override
+  public Rotation2d getRotation2d() {
+    return m_navx.getRotation2d();
+  }
+
+  @Override
+  public void resetEncoders() {
+    m_leftOffset = m_sim.getLeftPositionMeters();
+    m_rightOffset = m_sim.getRightPositionMeters();
+  }
+
+  @Override
+  public void simulate(double leftVolts, double rightVolts, double dt) {
+    m_sim.setInputs(friction(leftVolts, m_sim.getLeftVelocityMetersPerSecond()),
+                    friction(rightVolts,
+                             m_sim.getRightVelocityMetersPerSecond()));
+    m_sim.update(dt);
+
+    // The simulation's heading wraps at +/-180 degrees, but the NavX angle
+    // is continuous, so accumulate the change in heading.
+    double heading = m_sim.getHeading().getDegrees();
+    m_angle += MathUtil.inputModulus(heading - m_lastHeading, -180, 180);
+    m_lastHeading = heading;
+    m_navx.setSimAngle(m_angle);
+  }
+
+  /**
+   * Reduces a motor voltage by the static friction of the drive train. A
+   * moving side always loses kS volts against its direction of travel; a
+   * stopped side does not move until the voltage is more than kS.
+   *
+   * @param volts is the voltage applied to the motors.
+   *
+   * @param velocity is the current velocity of the side.
+   *
+   * @return the voltage that accelerates the side.
+   */
+  private double friction(double volts, double velocity) {
+    if(Math.abs(velocity) > 1e-3) {
+      return volts - Math.copySign(m_ks, velocity);
+    }
+    if(Math.abs(volts) <= m_ks) {
+      return 0;
+    }
+    return volts - Math.copySign(m_ks, volts);
+  }
+}
@@ -8,48 +8,112 @@ package frc.robot.subsystems;
 import static frc.robot.Constants.kEnableDetailedLogging;
 import static frc.robot.Constants.Catapult.kForwardLimitLeft;
 import static frc.robot.Constants.Catapult.kForwardLimitRight;
-
-import java.util.Arrays;
+import static frc.robot.Constants.Vision.kCameraHeading;
+import static frc.robot.Constants.Vision.kCameraHeight;
+import static frc.robot.Constants.Vision.kCameraPitch;
+import static frc.robot.Constants.Vision.kCameraX;
+import static frc.robot.Constants.Vision.kCameraY;
+import static frc.robot.Constants.Vision.kFilterWindow;
+import static frc.robot.Constants.Vision.kFrameTimeout;
+import static frc.robot.Constants.Vision.kHubPosition;
+import static frc.robot.Constants.Vision.kHubRadius;
+import static frc.robot.Constants.Vision.kHubTimeout;
+import static frc.robot.Constants.Vision.kSnapshotWindow;
+import static frc.robot.Constants.Vision.kTargetHeight;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.photonvision.PhotonCamera;
 import org.photonvision.targeting.PhotonPipelineResult;
 import org.photonvision.targeting.PhotonTrackedTarget;
 
-import edu.wpi.first.util.datalog.DataLog;
-import edu.wpi.first.util.datalog.DoubleLogEntry;
-import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.utils.InterpolatingTable;
 import frc.robot.utils.Log;
+import frc.robot.utils.LoopProfiler;
+import frc.robot.utils.NavX;
+import frc.robot.utils.Telemetry;
+import frc.robot.utils.TrimmedMeanFilter;
 
 public class VisionTracking extends SubsystemBase {
+  private final NavX m_navx;
+  private final Drive m_drive;
   private final PhotonCamera m_visionCamera = new PhotonCamera("photonvision");
   private final PhotonCamera m_frontCamera = new PhotonCamera("frontCamera");
-  private final DoubleLogEntry m_logArea;
-  private final DoubleLogEntry m_logPitch;
-  private final DoubleLogEntry m_logSkew;
-  private final DoubleLogEntry m_logYaw;
-  private final double[] m_yawHistory = new double[7];
-  private final double[] m_yawCopy = new double[7];
-  private final double[] m_pitchHistory = new double[7];
-  private final double[] m_pitchCopy = new double[7];
+  private final Telemetry.Field m_logArea;
+  private final Telemetry.Field m_logPitch;
+  private final Telemetry.Field m_logSkew;
+  private final Telemetry.Field m_logYaw;
+  private final TrimmedMeanFilter m_bearingFilter =
+    new TrimmedMeanFilter(kFilterWindow);
+  private final TrimmedMeanFilter m_pitchFilter =
+    new TrimmedMeanFilter(kFilterWindow);
+  private final InterpolatingTable m_leftLimits =
+    new InterpolatingTable("LeftCatapult", kLeftPitchToLim);
+  private final InterpolatingTable m_rightLimits =
+    new InterpolatingTable("RightCatapult", kRightPitchToLim);
+  private final TrimmedMeanFilter m_hubXFilter =
+    new TrimmedMeanFilter(kFilterWindow);
+  private final TrimmedMeanFilter m_hubYFilter =
+    new TrimmedMeanFilter(kFilterWindow);
+  private double m_frameTimestamp = Double.NaN;
+  private double m_frameArrival = 0;
+  private double m_pitch = 1000;
+  private double m_yaw = 0;
+  private double m_hubTime = Double.NEGATIVE_INFINITY;
   private double m_savedPitch;
   private double m_savedTime;
+  private double m_snapshotTime = Double.NEGATIVE_INFINITY;
   private boolean m_disableVis = false;
 
-  /** Creates a new VisionTracking. */
-  public VisionTracking() {
+  private final LoopProfiler.Section m_profile =
+    LoopProfiler.section("VisionTracking");
+
+  // The thread that sends snapshot requests to the camera, so that the
+  // NetworkTables writes are not made while the catapults are firing.
+  private final ExecutorService m_snapshotter =
+    Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "VisionSnapshot");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    });
+  private final Runnable m_takeSnapshot = this::takeSnapshot;
+
+  /**
+   * Creates a new VisionTracking.
+   *
+   * @param navx is the NavX, used to find the heading of the robot when each
+   *             camera frame was captured.
+   *
+   * @param drive is the drive subsystem, whose pose is used to locate the
+   *              hub on the field.
+   */
+  public VisionTracking(NavX navx, Drive drive) {
+    m_navx = navx;
+    m_drive = drive;
+
+    m_bearingFilter.fill(0);
+    m_pitchFilter.fill(1000.0);
+
     //NetworkTableInstance inst = NetworkTableInstance.getDefault();
     //NetworkTable table = inst.getTable("test");
     //NetworkTableEntry entry = table.getEntry("test");
     //entry.getLastChange();
 
     if(kEnableDetailedLogging) {
-      DataLog log = DataLogManager.getLog();
-      m_logArea = new DoubleLogEntry(log, "vision/area");
-      m_logPitch = new DoubleLogEntry(log, "vision/pitch");
-      m_logSkew = new DoubleLogEntry(log, "vision/skew");
-      m_logYaw = new DoubleLogEntry(log, "vision/yaw");
+      Telemetry.Frame frame = Telemetry.frame("/vision");
+      m_logArea = frame.field("area");
+      m_logPitch = frame.field("pitch");
+      m_logSkew = frame.field("skew");
+      m_logYaw = frame.field("yaw");
     } else {
       m_logArea = null;
       m_logPitch = null;
@@ -58,117 +122,205 @@ public class VisionTracking extends SubsystemBase {
     }
   }
 
-  @Override
-  public void periodic() {
-    PhotonPipelineResult result;
-    PhotonTrackedTarget target;
-    double pitch;
-    double yaw;
-
-    result = m_visionCamera.getLatestResult();
-    if(result.hasTargets()) {
-      target = result.getBestTarget();
-      pitch = target.getPitch();
-      yaw = target.getYaw();
-
-      if(kEnableDetailedLogging) {
-        m_logArea.append(target.getArea());
-        m_logPitch.append(pitch);
-        m_logSkew.append(target.getSkew());
-        m_logYaw.append(yaw);
-      }
-    } else {
-      pitch = 1000;
-      yaw = 0;
-    }
-
-    SmartDashboard.putNumber("Photon Vision Pitch", pitch);
-    SmartDashboard.putNumber("Photon Vision Yaw", yaw);
-
-    System.arraycopy(m_pitchHistory, 1, m_pitchHistory, 0, 6);
-    System.arraycopy(m_yawHistory, 1, m_yawHistory, 0, 6);
-
-    m_pitchHistory[6] = pitch;
-    m_yawHistory[6] = yaw;
-  }
-
   public void reset(){
     m_visionCamera.setDriverMode(false);
     m_frontCamera.setDriverMode(true);
 
-    for(int i = 0; i < 7; i++) {
-      m_yawHistory[i] = 0.0;
-      m_pitchHistory[i] = 1000.0;
-    }
-  }
-
-  public double computePitch(){
-    for(int i = 0; i < 7; i++) {
-      m_pitchCopy[i] = m_pitchHistory[i];
-    }
-    Arrays.sort(m_pitchCopy);
+    m_pitch = 1000;
+    m_yaw = 0;
+    m_bearingFilter.fill(0);
+    m_pitchFilter.fill(1000.0);
 
-    double q1 = m_pitchCopy[1];
-    double q3 = m_pitchCopy[5];
+    // Forget the hub, so that the next sighting starts a new estimate rather
+    // than being averaged with the stale one.
+    m_hubXFilter.fill(0);
+    m_hubYFilter.fill(0);
+    m_hubTime = Double.NEGATIVE_INFINITY;
+  }
 
-    double iqr = q3 - q1;
+  @Override
+  public void periodic() {
+    m_profile.start();
+
+    double now = Timer.getFPGATimestamp();
+
+    PhotonPipelineResult result = m_visionCamera.getLatestResult();
+    double timestamp = result.getTimestampSeconds();
+
+    // Only add a frame to the history the first time it is seen; the camera
+    // runs slower than the robot loop, so the same frame is usually returned
+    // by several loops in a row.
+    if(timestamp != m_frameTimestamp) {
+      double heading = headingAt(timestamp);
+
+      m_frameTimestamp = timestamp;
+      m_frameArrival = now;
+
+      if(result.hasTargets()) {
+        PhotonTrackedTarget target = result.getBestTarget();
+        m_pitch = target.getPitch();
+        m_yaw = target.getYaw();
+
+        if(kEnableDetailedLogging) {
+          m_logArea.set(target.getArea());
+          m_logPitch.set(m_pitch);
+          m_logSkew.set(target.getSkew());
+          m_logYaw.set(m_yaw);
+        }
+
+        locateHub(now, timestamp);
+      } else {
+        m_pitch = 1000;
+        m_yaw = 0;
+      }
 
-    double sum = 0;
-    for(int i = 1; i < 6; i++) {
-      sum += m_pitchCopy[i];
+      addSample(m_pitch, heading + m_yaw);
+    } else if((now - m_frameArrival) > kFrameTimeout) {
+      // No frames are arriving (for example, the camera has disconnected),
+      // so treat the target as lost.
+      m_pitch = 1000;
+      m_yaw = 0;
+      addSample(m_pitch, headingAt(now));
     }
-    int count = 5;
 
-    if(m_pitchCopy[6] < (q3 + (iqr * 1.5))) {
-      sum += m_pitchCopy[6];
-      count++;
-    }
+    SmartDashboard.putNumber("Photon Vision Pitch", m_pitch);
+    SmartDashboard.putNumber("Photon Vision Yaw", m_yaw);
 
-    if(m_pitchCopy[0] > (q1 - (iqr * 1.5))) {
-      sum += m_pitchCopy[0];
-      count++;
-    }
+    m_profile.stop();
+  }
 
-    return sum / count;
+  /**
+   * Adds a camera frame to the history.
+   *
+   * @param pitch is the pitch to the target, or 1000 if there is no target.
+   *
+   * @param bearing is the heading the robot would need to turn to in order
+   *                to face the target, based on the heading of the robot
+   *                when the frame was captured.
+   */
+  private void addSample(double pitch, double bearing) {
+    m_pitchFilter.add(pitch);
+    m_bearingFilter.add(bearing);
   }
 
-  public double computeYaw(){
-    for(int i = 0; i < 7; i++) {
-      m_yawCopy[i] = m_yawHistory[i];
+  /**
+   * Estimates the position of the hub on the field from the current camera
+   * frame, and adds it to the filtered hub position. The pose of the robot
+   * is also measured from the known position of the hub, and passed to the
+   * drive subsystem to correct its estimated pose.
+   *
+   * @param now is the current FPGA time, in seconds.
+   *
+   * @param timestamp is the FPGA time that the frame was captured, in
+   *                  seconds.
+   */
+  private void locateHub(double now, double timestamp) {
+    // The distance to the target follows from the camera and target heights
+    // and the angle from the camera up to the target. Targets near the
+    // horizon give a wildly inaccurate distance, so they are ignored.
+    double elevation = kCameraPitch + m_pitch;
+    if(elevation < 5.0) {
+      return;
     }
-    Arrays.sort(m_yawCopy);
-
-    double q1 = m_yawCopy[1];
-    double q3 = m_yawCopy[5];
+    double distance = ((kTargetHeight - kCameraHeight) /
+                       Math.tan(Math.toRadians(elevation))) + kHubRadius;
+
+    // Use the pose of the robot when the frame was captured, since the
+    // robot may have moved and turned since then.
+    Pose2d pose = m_drive.getPoseAt(timestamp);
+    double robotAngle = pose.getRotation().getDegrees();
+    double robotRadians = Math.toRadians(robotAngle);
+    double cameraAngle = Math.toRadians(robotAngle + kCameraHeading + m_yaw);
+
+    // The offset from the center of the robot to the hub.
+    double dx = (kCameraX * Math.cos(robotRadians)) -
+                (kCameraY * Math.sin(robotRadians)) +
+                (distance * Math.cos(cameraAngle));
+    double dy = (kCameraX * Math.sin(robotRadians)) +
+                (kCameraY * Math.cos(robotRadians)) +
+                (distance * Math.sin(cameraAngle));
+    double x = pose.getX() + dx;
+    double y = pose.getY() + dy;
+
+    // Working back from where the hub actually is gives the position of the
+    // robot when the frame was captured.
+    m_drive.addVisionMeasurement(
+      new Pose2d(kHubPosition.getX() - dx, kHubPosition.getY() - dy,
+                 new Rotation2d(robotRadians)),
+      timestamp);
+
+    // Start over if the previous estimate has expired, so that it does not
+    // pull on the new one.
+    if(hasHub()) {
+      m_hubXFilter.add(x);
+      m_hubYFilter.add(y);
+    } else {
+      m_hubXFilter.fill(x);
+      m_hubYFilter.fill(y);
+    }
+    m_hubTime = now;
+  }
 
-    double iqr = q3 - q1;
+  /**
+   * Determines if the position of the hub is known.
+   *
+   * @return <b>true</b> if the hub has been seen recently enough that its
+   *         estimated position can be used.
+   */
+  public boolean hasHub() {
+    return (Timer.getFPGATimestamp() - m_hubTime) < kHubTimeout;
+  }
 
-    double sum = 0;
-    for(int i = 1; i < 6; i++) {
-      sum += m_yawCopy[i];
-    }
-    int count = 5;
+  /**
+   * Gets the estimated position of the hub on the field. This is only
+   * meaningful if {@link #hasHub} returns <b>true</b>.
+   *
+   * @return the position of the hub, in field coordinates.
+   */
+  public Translation2d getHubPosition() {
+    return new Translation2d(m_hubXFilter.get(), m_hubYFilter.get());
+  }
 
-    if(m_yawCopy[6] < (q3 + (iqr * 1.5))) {
-      sum += m_yawCopy[6];
-      count++;
-    }
+  /**
+   * Finds the heading of the robot at a time in the recent past, from the
+   * drive's pose history. The history turns with the NavX, so the heading
+   * then is the current NavX angle less the turn since.
+   *
+   * @param time is the FPGA time, in seconds.
+   *
+   * @return the heading of the robot at that time, in degrees (as a NavX
+   *         angle).
+   */
+  private double headingAt(double time) {
+    Rotation2d turn =
+      m_drive.getPose().getRotation().minus(m_drive.getPoseAt(time).
+                                             getRotation());
+    return m_navx.getAngle() - turn.getDegrees();
+  }
 
-    if(m_yawCopy[0] > (q1 - (iqr * 1.5))) {
-      sum += m_yawCopy[0];
-      count++;
-    }
+  public double computePitch(){
+    return m_pitchFilter.get();
+  }
 
-    return sum / count;
+  /**
+   * Computes the filtered bearing to the target, which is the heading that
+   * the robot needs to turn to in order to face the target.
+   *
+   * @return the bearing to the target, in degrees.
+   */
+  public double computeBearing(){
+    return m_bearingFilter.get();
   }
 
-  private final double[][] m_leftPitchToLim = { { 13.24, 4.7 },
-                                                { 0.9, 5.5 },
-                                                { -7.8, 5.9 },
-                                                { -13.5, 6.8 },
-                                                { -18.4, 8.1 },
-                                                { -20.2, 8.8 },
-                                                { -30.0, 8.8 } };
+  // The left catapult limits used if tables/LeftCatapult.json can not be
+  // loaded.
+  private static final double[][] kLeftPitchToLim = { { 13.24, 4.7 },
+                                                      { 0.9, 5.5 },
+                                                      { -7.8, 5.9 },
+                                                      { -13.5, 6.8 },
+                                                      { -18.4, 8.1 },
+                                                      { -20.2, 8.8 },
+                                                      { -30.0, 8.8 } };
 
   public double LeftCatapultPitchToLim() {
     double pitch;
@@ -178,30 +330,14 @@ public class VisionTracking extends SubsystemBase {
     m_savedPitch = pitch;
     m_savedTime = System.currentTimeMillis();
 
-    m_visionCamera.takeInputSnapshot();
-    m_visionCamera.takeOutputSnapshot();
+    requestSnapshot();
 
     if((SmartDashboard.getBoolean("Disable Vision", false) == true) ||
        (pitch >= 1000) || m_disableVis == true) {
       return kForwardLimitLeft;
     }
 
-    double lowerPitch = 0;
-    double lowerLim = 0;
-    double higherPitch = 0;
-    double higherLim = 0;
-
-    for(int i = 1; i <= (m_leftPitchToLim.length - 1); i++) {
-      if(m_leftPitchToLim[i][0] < pitch) {
-        lowerPitch = m_leftPitchToLim[i][0];
-        lowerLim = m_leftPitchToLim[i][1];
-        higherPitch = m_leftPitchToLim[i - 1][0];
-        higherLim = m_leftPitchToLim[i - 1][1];
-        break;
-      }
-    }
-
-    double limit = (pitch - lowerPitch) / (higherPitch - lowerPitch) * (higherLim - lowerLim) + lowerLim;
+    double limit = m_leftLimits.get(pitch);
 
     Log.log("Left Pitch: " + pitch);
     Log.log("Left Limit: " + limit);
@@ -209,13 +345,15 @@ public class VisionTracking extends SubsystemBase {
     return limit;
   }
 
-  private final double[][] m_rightPitchToLim = { { 13.24, 4.7 },
-                                                 { 0.9, 5.4 },
-                                                 { -7.8, 5.9 },
-                                                 { -13.5, 6.7 },
-                                                 { -18.4, 8 },
-                                                 { -20.2, 8.8 },
-                                                 { -30.0, 8.8 } };
+  // The right catapult limits used if tables/RightCatapult.json can not be
+  // loaded.
+  private static final double[][] kRightPitchToLim = { { 13.24, 4.7 },
+                                                       { 0.9, 5.4 },
+                                                       { -7.8, 5.9 },
+                                                       { -13.5, 6.7 },
+                                                       { -18.4, 8 },
+                                                       { -20.2, 8.8 },
+                                                       { -30.0, 8.8 } };
 
   public double RightCatapultPitchToLim() {
     double pitch;
@@ -224,32 +362,16 @@ public class VisionTracking extends SubsystemBase {
       pitch = m_savedPitch;
     } else {
       pitch = computePitch();
-
-      m_visionCamera.takeInputSnapshot();
-      m_visionCamera.takeOutputSnapshot();
     }
 
+    requestSnapshot();
+
     if((SmartDashboard.getBoolean("Disable Vision", false) == true) ||
        (pitch >= 1000) || (m_disableVis == true)) {
       return kForwardLimitRight;
     }
 
-    double lowerPitch = 0;
-    double lowerLim = 0;
-    double higherPitch = 0;
-    double higherLim = 0;
-
-    for(int i = 1; i <= (m_rightPitchToLim.length - 1); i++) {
-      if(m_rightPitchToLim[i][0] < pitch) {
-        lowerPitch = m_rightPitchToLim[i][0];
-        lowerLim = m_rightPitchToLim[i][1];
-        higherPitch = m_rightPitchToLim[i - 1][0];
-        higherLim = m_rightPitchToLim[i - 1][1];
-        break;
-      }
-    }
-
-    double limit = (pitch - lowerPitch) / (higherPitch - lowerPitch) * (higherLim - lowerLim) + lowerLim;
+    double limit = m_rightLimits.get(pitch);
 
     Log.log("Right Pitch: " + pitch);
     Log.log("Right Limit: " + limit);
@@ -257,18 +379,60 @@ public class VisionTracking extends SubsystemBase {
     return limit;
   }
 
+  /**
+   * Gets the angle that the robot needs to turn in order to face the target.
+   * If the position of the hub is known, this is computed from the robot's
+   * current pose, so it is up to date every loop even when there is no new
+   * camera frame (or the target is out of view). Otherwise, it comes from the
+   * filtered camera frames, measured from the robot's current heading so
+   * that it accounts for any turning since the frames were captured.
+   *
+   * @return the angle to turn, in degrees; positive turns to the right.
+   */
   public double getYaw() {
-    double yaw = computeYaw();
-
     if((SmartDashboard.getBoolean("Disable Vision", false) == true) ||
        (m_disableVis == true)) {
       // possibly want different outcome
-      yaw = 0;
-    } else if(yaw >= 1000) {
-      yaw = 0;
+      return 0;
+    }
+
+    if(hasHub()) {
+      Pose2d pose = m_drive.getPose();
+      double direction =
+        Math.toDegrees(Math.atan2(m_hubYFilter.get() - pose.getY(),
+                                  m_hubXFilter.get() - pose.getX()));
+      double facing = pose.getRotation().getDegrees() + kCameraHeading;
+
+      return -MathUtil.inputModulus(direction - facing, -180, 180);
+    }
+
+    return m_navx.getAngle() - computeBearing();
+  }
+
+  /**
+   * Asks the camera to save its input and output images, so that the target
+   * can be reviewed after a shot. The request is sent from a background
+   * thread, and is ignored if a snapshot was requested within the last
+   * kSnapshotWindow seconds (so that both catapults firing produces one
+   * snapshot, not two).
+   */
+  private void requestSnapshot() {
+    double now = Timer.getFPGATimestamp();
+
+    if((now - m_snapshotTime) < kSnapshotWindow) {
+      return;
     }
+    m_snapshotTime = now;
 
-    return -yaw;
+    m_snapshotter.execute(m_takeSnapshot);
+  }
+
+  /**
+   * Takes a snapshot, run on the snapshot thread.
+   */
+  private void takeSnapshot() {
+    m_visionCamera.takeInputSnapshot();
+    m_visionCamera.takeOutputSnapshot();
   }
 
   public void disableVFromController() {
@@ -0,0 +1,202 @@
+// Copyright (c) 2022 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import static frc.robot.Constants.Sampler.kPeriod;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.Notifier;
+
+/**
+ * This class reads motor controller status values (applied output, bus
+ * voltage, current, and so on) on a separate thread, so that the blocking
+ * CAN reads needed for logging do not take time from the robot loop. Values
+ * that the robot needs to control itself (such as encoder positions) should
+ * still be read directly in the robot loop.
+ *
+ * <p>Each signal is sampled at its own rate, which is a multiple of
+ * kPeriod. The samples are published as a snapshot into one of two buffers,
+ * which the robot loop reads without locking: the sampler writes the next
+ * snapshot into the buffer that is not being read, and a sequence number
+ * lets a reader detect the (very unlikely) case that it read a buffer while
+ * it was being overwritten, in which case it simply reads again.
+ */
+public final class CanSampler {
+  //
+  // The signals that are sampled.
+  //
+  private static final ArrayList<Signal> m_signals = new ArrayList<Signal>();
+
+  //
+  // The two snapshot buffers, indexed by the low bit of the version.
+  //
+  private static double[][] m_buffers;
+
+  //
+  // The version of the most recently published snapshot.
+  //
+  private static volatile long m_version = 0;
+
+  //
+  // The version of the snapshot currently being written; the buffer that it
+  // is written into held the snapshot two versions before it.
+  //
+  private static volatile long m_writing = 0;
+
+  //
+  // The number of times the sampler has run.
+  //
+  private static long m_tick = 0;
+
+  //
+  // The notifier that runs the sampler thread.
+  //
+  private static Notifier m_notifier = null;
+
+  /**
+   * Registers a signal to be sampled. Signals must be registered before the
+   * sampler is started.
+   *
+   * @param supplier reads the value of the signal.
+   *
+   * @param period is the time, in seconds, between samples of the signal.
+   *
+   * @return the signal.
+   */
+  public static Signal signal(DoubleSupplier supplier, double period) {
+    return signal(supplier, period, null);
+  }
+
+  /**
+   * Registers a signal to be sampled and logged. Signals must be registered
+   * before the sampler is started.
+   *
+   * @param supplier reads the value of the signal.
+   *
+   * @param period is the time, in seconds, between samples of the signal.
+   *
+   * @param field is the telemetry field that the most recent sample is
+   *              copied into by {@link #update}.
+   *
+   * @return the signal.
+   */
+  public static Signal signal(DoubleSupplier supplier, double period,
+                              Telemetry.Field field) {
+    if(m_notifier != null) {
+      throw new IllegalStateException("CAN signal registered after the " +
+                                      "sampler was started");
+    }
+
+    Signal signal = new Signal(m_signals.size(), supplier,
+                               Math.max(1, (int)Math.round(period / kPeriod)),
+                               field);
+    m_signals.add(signal);
+    return signal;
+  }
+
+  /**
+   * Starts the sampler thread. Should be called at robot startup time, once
+   * the subsystems have registered their signals.
+   */
+  public static void start() {
+    m_buffers = new double[2][m_signals.size()];
+    for(int i = 0; i < m_signals.size(); i++) {
+      m_buffers[0][i] = m_signals.get(i).m_supplier.getAsDouble();
+    }
+
+    m_notifier = new Notifier(CanSampler::sample);
+    m_notifier.setName("CanSampler");
+    m_notifier.startPeriodic(kPeriod);
+  }
+
+  /**
+   * Copies the most recent sample of each logged signal into its telemetry
+   * field. Should be called from robotPeriodic() before the telemetry is
+   * flushed.
+   */
+  public static void update() {
+    if(m_notifier == null) {
+      return;
+    }
+
+    for(int i = 0; i < m_signals.size(); i++) {
+      Signal signal = m_signals.get(i);
+      if(signal.m_field != null) {
+        signal.m_field.set(signal.get());
+      }
+    }
+  }
+
+  /**
+   * Takes the next snapshot, run periodically on the sampler thread.
+   */
+  private static void sample() {
+    long version = m_version;
+    double[] front = m_buffers[(int)(version & 1)];
+    double[] back = m_buffers[(int)((version + 1) & 1)];
+
+    // Announce that the back buffer is about to be overwritten, before
+    // writing anything into it.
+    m_writing = version + 1;
+    VarHandle.storeStoreFence();
+
+    System.arraycopy(front, 0, back, 0, front.length);
+    for(int i = 0; i < m_signals.size(); i++) {
+      Signal signal = m_signals.get(i);
+      if((m_tick % signal.m_ticks) == 0) {
+        back[i] = signal.m_supplier.getAsDouble();
+      }
+    }
+    m_tick++;
+
+    m_version = version + 1;
+  }
+
+  /**
+   * A value that is sampled by the sampler thread.
+   */
+  public static final class Signal {
+    private final int m_index;
+    private final DoubleSupplier m_supplier;
+    private final int m_ticks;
+    private final Telemetry.Field m_field;
+
+    private Signal(int index, DoubleSupplier supplier, int ticks,
+                   Telemetry.Field field) {
+      m_index = index;
+      m_supplier = supplier;
+      m_ticks = ticks;
+      m_field = field;
+    }
+
+    /**
+     * Gets the most recent sample of the signal, without blocking.
+     *
+     * @return the value of the signal, or 0 if the sampler has not been
+     *         started.
+     */
+    public double get() {
+      if(m_buffers == null) {
+        return 0;
+      }
+
+      while(true) {
+        long version = m_version;
+        double value = m_buffers[(int)(version & 1)][m_index];
+
+        // The buffer that was read is only overwritten once the sampler
+        // starts writing the snapshot after the next one.
+        VarHandle.loadLoadFence();
+        if(m_writing <= (version + 1)) {
+          return value;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,170 @@
+// Copyright (c) 2022 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import static frc.robot.Constants.Drive.kTrackWidth;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import frc.robot.Constants;
+
+/**
+ * The feedforward gains of the drive train. These are loaded from
+ * "gains/drive.json" in the deploy directory, which is written by
+ * {@link SysIdFit} from the SysId data, so that the gains can be re-fit
+ * without editing the code. If there is no gains file, the gains in
+ * {@link Constants.Drive} are used instead.
+ */
+public final class DriveGains {
+  //
+  // The gains, loaded the first time that they are needed.
+  //
+  private static DriveGains m_gains;
+
+  private final double m_ks;
+  private final double m_kv;
+  private final double m_ka;
+
+  private DriveGains(double ks, double kv, double ka) {
+    m_ks = ks;
+    m_kv = kv;
+    m_ka = ka;
+  }
+
+  /**
+   * Gets the drive train gains, loading them if this is the first time that
+   * they are needed.
+   *
+   * @return the gains.
+   */
+  public static synchronized DriveGains get() {
+    if(m_gains == null) {
+      File file = new File(Filesystem.getDeployDirectory(), "gains/drive.json");
+      try {
+        m_gains = load(file);
+        Log.log("Loaded drive gains: kS " + m_gains.m_ks + ", kV " +
+                m_gains.m_kv + ", kA " + m_gains.m_ka);
+      } catch(FileNotFoundException e) {
+        m_gains = new DriveGains(Constants.Drive.kS, Constants.Drive.kV,
+                                 Constants.Drive.kA);
+      } catch(IOException e) {
+        DriverStation.reportError("Unable to load drive gains: " +
+                                  e.getMessage(), false);
+        m_gains = new DriveGains(Constants.Drive.kS, Constants.Drive.kV,
+                                 Constants.Drive.kA);
+      }
+    }
+    return m_gains;
+  }
+
+  /**
+   * Loads the gains from the gains file.
+   *
+   * @param file is the gains file.
+   *
+   * @return the gains.
+   */
+  private static DriveGains load(File file) throws IOException {
+    double ks = Double.NaN;
+    double kv = Double.NaN;
+    double ka = Double.NaN;
+
+    try(JsonReader reader =
+          new JsonReader(new BufferedReader(new FileReader(file)),
+                         file.getName())) {
+      reader.beginObject();
+      while(reader.hasNext()) {
+        switch(reader.nextName()) {
+          case "kS":
+            ks = reader.nextDouble();
+            break;
+
+          case "kV":
+            kv = reader.nextDouble();
+            break;
+
+          case "kA":
+            ka = reader.nextDouble();
+            break;
+
+          default:
+            reader.skipValue();
+            break;
+        }
+      }
+      reader.endObject();
+    }
+
+    if(Double.isNaN(ks) || Double.isNaN(kv) || Double.isNaN(ka)) {
+      throw new IOException(file.getName() + ": kS, kV and kA are required");
+    }
+    return new DriveGains(ks, kv, ka);
+  }
+
+  /**
+   * Gets the drive train's coefficient of static friction, corresponding to
+   * the voltage required to get the drive train to just start moving.
+   *
+   * @return the static friction, in volts.
+   */
+  public double getKS() {
+    return m_ks;
+  }
+
+  /**
+   * Gets the drive train's velocity coefficient, corresponding to the
+   * voltage required to maintain a speed of 1 m/s.
+   *
+   * @return the velocity coefficient, in volts per m/s.
+   */
+  public double getKV() {
+    return m_kv;
+  }
+
+  /**
+   * Gets the drive train's acceleration coefficient, corresponding to the
+   * voltage required to accelerate by 1 m/s^2.
+   *
+   * @return the acceleration coefficient, in volts per m/s^2.
+   */
+  public double getKA() {
+    return m_ka;
+  }
+
+  /**
+   * Gets the drive train's angular velocity coefficient, corresponding to
+   * the voltage required to turn the robot in place at 1 rad/s (not per m/s
+   * of wheel speed, so it must be given to LinearSystemId along with the
+   * track width). The turning of the drive train has not been characterized,
+   * so this is estimated from kV as the voltage needed to move the wheels
+   * around the track width at that rate.
+   *
+   * @return the angular velocity coefficient, in volts per rad/s of robot
+   *         rotation.
+   */
+  public double getKVAngular() {
+    return m_kv * (kTrackWidth / 2);
+  }
+
+  /**
+   * Gets the drive train's angular acceleration coefficient, corresponding
+   * to the voltage required to accelerate the turn of the robot by 1
+   * rad/s^2. This is estimated from kA in the same way as
+   * {@link #getKVAngular}.
+   *
+   * @return the angular acceleration coefficient, in volts per rad/s^2 of
+   *         robot rotation.
+   */
+  public double getKAAngular() {
+    return m_ka * (kTrackWidth / 2);
+  }
+}
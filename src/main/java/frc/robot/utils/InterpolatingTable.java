@@ -0,0 +1,340 @@
+// Copyright (c) 2022 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import edu.wpi.first.networktables.EntryListenerFlags;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+
+/**
+ * A lookup table that maps an input to an output by interpolating between a
+ * set of measured points. Inputs beyond the ends of the table return the
+ * output of the nearest end point instead of extrapolating.
+ *
+ * <p>The points are loaded from "tables/&lt;name&gt;.json" in the deploy
+ * directory, which looks like:
+ *
+ * <pre>
+ * {
+ *   "cubic": false,
+ *   "points": [ [ x0, y0 ], [ x1, y1 ], ... ]
+ * }
+ * </pre>
+ *
+ * <p>If "cubic" is <b>true</b>, the points are joined by a monotone cubic
+ * (which is smooth, but never overshoots between points); otherwise they are
+ * joined by straight lines. The points do not need to be in order.
+ *
+ * <p>The table is also published to NetworkTables under "Tables/&lt;name&gt;",
+ * as "points" (a single array of [ x0, y0, x1, y1, ... ], so that an edit of
+ * the points always arrives as a whole) and "cubic". Changes made there from
+ * the dashboard take effect immediately. Each change is logged, so that the
+ * tuned points can be copied back into the deploy file.
+ */
+public class InterpolatingTable {
+  private final String m_name;
+  private final NetworkTableEntry m_pointsEntry;
+  private final NetworkTableEntry m_cubicEntry;
+
+  //
+  // The current points of the table. This is replaced (never modified) when
+  // the table is changed from the dashboard, which happens on the
+  // NetworkTables thread.
+  //
+  private volatile Points m_points;
+
+  /**
+   * Creates a new InterpolatingTable.
+   *
+   * @param name is the name of the table, which selects the deploy file and
+   *             the NetworkTables entries.
+   *
+   * @param defaults are the points (as { x, y } pairs) to use if the deploy
+   *                 file can not be loaded.
+   */
+  public InterpolatingTable(String name, double[][] defaults) {
+    m_name = name;
+
+    File file = new File(Filesystem.getDeployDirectory(),
+                         "tables/" + name + ".json");
+    Points points;
+    try {
+      points = load(file);
+    } catch(IOException e) {
+      DriverStation.reportError("Unable to load table " + name + ": " +
+                                e.getMessage(), false);
+
+      double[] x = new double[defaults.length];
+      double[] y = new double[defaults.length];
+      for(int i = 0; i < defaults.length; i++) {
+        x[i] = defaults[i][0];
+        y[i] = defaults[i][1];
+      }
+      points = Points.create(x, y, false);
+    }
+    m_points = points;
+
+    NetworkTable table =
+      NetworkTableInstance.getDefault().getTable("Tables").getSubTable(name);
+    m_pointsEntry = table.getEntry("points");
+    m_cubicEntry = table.getEntry("cubic");
+    double[] pairs = new double[points.m_x.length * 2];
+    for(int i = 0; i < points.m_x.length; i++) {
+      pairs[i * 2] = points.m_x[i];
+      pairs[(i * 2) + 1] = points.m_y[i];
+    }
+    m_pointsEntry.setDoubleArray(pairs);
+    m_cubicEntry.setBoolean(points.m_slopes != null);
+
+    m_pointsEntry.addListener(event -> tune(), EntryListenerFlags.kUpdate);
+    m_cubicEntry.addListener(event -> tune(), EntryListenerFlags.kUpdate);
+  }
+
+  /**
+   * Looks up a value in the table.
+   *
+   * @param x is the input value.
+   *
+   * @return the interpolated output value.
+   */
+  public double get(double x) {
+    return m_points.get(x);
+  }
+
+  /**
+   * Loads the points of the table from a deploy file.
+   *
+   * @param file is the file to load.
+   *
+   * @return the points.
+   */
+  private static Points load(File file) throws IOException {
+    ArrayList<double[]> pairs = new ArrayList<double[]>();
+    boolean cubic = false;
+
+    try(JsonReader reader =
+          new JsonReader(new BufferedReader(new FileReader(file)),
+                         file.getName())) {
+      reader.beginObject();
+      while(reader.hasNext()) {
+        switch(reader.nextName()) {
+          case "cubic":
+            cubic = reader.nextBoolean();
+            break;
+
+          case "points":
+            reader.beginArray();
+            while(reader.hasNext()) {
+              reader.beginArray();
+              double[] pair = new double[2];
+              for(int i = 0; i < 2; i++) {
+                if(!reader.hasNext()) {
+                  throw reader.error("expected an [ x, y ] pair");
+                }
+                pair[i] = reader.nextDouble();
+              }
+              if(reader.hasNext()) {
+                throw reader.error("expected an [ x, y ] pair");
+              }
+              reader.endArray();
+              pairs.add(pair);
+            }
+            reader.endArray();
+            break;
+
+          default:
+            reader.skipValue();
+            break;
+        }
+      }
+      reader.endObject();
+    }
+
+    double[] x = new double[pairs.size()];
+    double[] y = new double[pairs.size()];
+    for(int i = 0; i < pairs.size(); i++) {
+      x[i] = pairs.get(i)[0];
+      y[i] = pairs.get(i)[1];
+    }
+
+    try {
+      return Points.create(x, y, cubic);
+    } catch(IllegalArgumentException e) {
+      throw new IOException(file.getName() + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Replaces the points of the table with those from NetworkTables, called
+   * when any of the table's entries are changed from the dashboard.
+   */
+  private void tune() {
+    double[] pairs = m_pointsEntry.getDoubleArray(new double[0]);
+    boolean cubic = m_cubicEntry.getBoolean(false);
+
+    if((pairs.length % 2) != 0) {
+      DriverStation.reportWarning("Ignoring change to table " + m_name +
+                                  ": points must be [ x, y ] pairs", false);
+      return;
+    }
+    double[] x = new double[pairs.length / 2];
+    double[] y = new double[pairs.length / 2];
+    for(int i = 0; i < x.length; i++) {
+      x[i] = pairs[i * 2];
+      y[i] = pairs[(i * 2) + 1];
+    }
+
+    try {
+      m_points = Points.create(x, y, cubic);
+    } catch(IllegalArgumentException e) {
+      DriverStation.reportWarning("Ignoring change to table " + m_name +
+                                  ": " + e.getMessage(), false);
+      return;
+    }
+
+    Log.log("Table " + m_name + " changed: cubic " + cubic + ", x " +
+            Arrays.toString(x) + ", y " + Arrays.toString(y));
+  }
+
+  /**
+   * The points of a table, sorted by their input value.
+   */
+  private static final class Points {
+    private final double[] m_x;
+    private final double[] m_y;
+    private final double[] m_slopes;
+
+    private Points(double[] x, double[] y, double[] slopes) {
+      m_x = x;
+      m_y = y;
+      m_slopes = slopes;
+    }
+
+    /**
+     * Creates the points of a table.
+     *
+     * @param x are the input values.
+     *
+     * @param y are the output values.
+     *
+     * @param cubic is <b>true</b> if the points are joined by a monotone
+     *              cubic instead of straight lines.
+     *
+     * @return the points.
+     */
+    private static Points create(double[] x, double[] y, boolean cubic) {
+      int n = x.length;
+      if(n < 2) {
+        throw new IllegalArgumentException("at least two points are needed");
+      }
+
+      // Sort the points by their input value.
+      Integer[] order = new Integer[n];
+      for(int i = 0; i < n; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, (a, b) -> Double.compare(x[a], x[b]));
+
+      double[] sortedX = new double[n];
+      double[] sortedY = new double[n];
+      for(int i = 0; i < n; i++) {
+        sortedX[i] = x[order[i]];
+        sortedY[i] = y[order[i]];
+        if(!Double.isFinite(sortedX[i]) || !Double.isFinite(sortedY[i])) {
+          throw new IllegalArgumentException("points must be finite");
+        }
+        if((i > 0) && (sortedX[i] == sortedX[i - 1])) {
+          throw new IllegalArgumentException("duplicate input " +
+                                             sortedX[i]);
+        }
+      }
+
+      return new Points(sortedX, sortedY,
+                        cubic ? slopes(sortedX, sortedY) : null);
+    }
+
+    /**
+     * Computes the slope of the monotone cubic at each point, using the
+     * Fritsch-Butland method: the slope is the weighted harmonic mean of the
+     * slopes of the lines to the neighboring points, or zero if the table
+     * changes direction at the point.
+     */
+    private static double[] slopes(double[] x, double[] y) {
+      int n = x.length;
+      double[] slopes = new double[n];
+
+      slopes[0] = (y[1] - y[0]) / (x[1] - x[0]);
+      slopes[n - 1] = (y[n - 1] - y[n - 2]) / (x[n - 1] - x[n - 2]);
+
+      for(int i = 1; i < (n - 1); i++) {
+        double h0 = x[i] - x[i - 1];
+        double h1 = x[i + 1] - x[i];
+        double d0 = (y[i] - y[i - 1]) / h0;
+        double d1 = (y[i + 1] - y[i]) / h1;
+
+        if((d0 * d1) <= 0) {
+          slopes[i] = 0;
+        } else {
+          slopes[i] = (3 * (h0 + h1)) /
+                      ((((2 * h1) + h0) / d0) + ((h1 + (2 * h0)) / d1));
+        }
+      }
+
+      return slopes;
+    }
+
+    /**
+     * Looks up a value in the table.
+     *
+     * @param x is the input value.
+     *
+     * @return the interpolated output value.
+     */
+    private double get(double x) {
+      int n = m_x.length;
+
+      if(x <= m_x[0]) {
+        return m_y[0];
+      }
+      if(x >= m_x[n - 1]) {
+        return m_y[n - 1];
+      }
+
+      // Find the segment containing x; binarySearch returns either the exact
+      // index or (-(insertion point) - 1).
+      int i = Arrays.binarySearch(m_x, x);
+      if(i >= 0) {
+        return m_y[i];
+      }
+      i = -i - 2;
+
+      double h = m_x[i + 1] - m_x[i];
+      double t = (x - m_x[i]) / h;
+
+      if(m_slopes == null) {
+        return m_y[i] + ((m_y[i + 1] - m_y[i]) * t);
+      }
+
+      // Evaluate the cubic Hermite spline between the two points.
+      double t2 = t * t;
+      double t3 = t2 * t;
+      return (((2 * t3) - (3 * t2) + 1) * m_y[i]) +
+             ((t3 - (2 * t2) + t) * h * m_slopes[i]) +
+             (((-2 * t3) + (3 * t2)) * m_y[i + 1]) +
+             ((t3 - t2) * h * m_slopes[i + 1]);
+    }
+  }
+}
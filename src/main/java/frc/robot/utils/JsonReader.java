@@ -0,0 +1,404 @@
+// Copyright (c) 2022 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A streaming JSON reader, which reads values one at a time as the caller
+ * walks the document instead of building a tree of the whole file. Numbers
+ * are returned as primitive doubles, so reading a large file of numbers does
+ * not box every value.
+ *
+ * <p>Errors (including a value of the wrong type) are reported with a
+ * {@link JsonException} that names the file, line and column where the
+ * problem was found.
+ */
+public class JsonReader implements Closeable {
+  /**
+   * The type of the next value in the document.
+   */
+  public enum Token {
+    kBeginObject,
+    kEndObject,
+    kBeginArray,
+    kEndArray,
+    kString,
+    kNumber,
+    kBoolean,
+    kNull,
+    kEnd
+  }
+
+  private static final int kMaxDepth = 64;
+
+  private final Reader m_reader;
+  private final String m_source;
+  private final char[] m_buffer = new char[8192];
+  private final StringBuilder m_text = new StringBuilder();
+  private final boolean[] m_first = new boolean[kMaxDepth];
+  private int m_depth = 0;
+  private int m_position = 0;
+  private int m_limit = 0;
+  private int m_line = 1;
+  private int m_column = 1;
+
+  /**
+   * Creates a reader for a JSON document.
+   *
+   * @param reader is the source of the document.
+   *
+   * @param source is the name of the document, used in error messages.
+   */
+  public JsonReader(Reader reader, String source) {
+    m_reader = reader;
+    m_source = source;
+  }
+
+  /**
+   * Finds the type of the next value, without consuming it.
+   *
+   * @return the type of the next value.
+   */
+  public Token peek() throws IOException {
+    int c = peekChar();
+    switch(c) {
+      case -1:
+        return Token.kEnd;
+      case '{':
+        return Token.kBeginObject;
+      case '}':
+        return Token.kEndObject;
+      case '[':
+        return Token.kBeginArray;
+      case ']':
+        return Token.kEndArray;
+      case '"':
+        return Token.kString;
+      case 't':
+      case 'f':
+        return Token.kBoolean;
+      case 'n':
+        return Token.kNull;
+      default:
+        if((c == '-') || ((c >= '0') && (c <= '9'))) {
+          return Token.kNumber;
+        }
+        throw error("unexpected character '" + (char)c + "'");
+    }
+  }
+
+  /**
+   * Consumes the start of an object.
+   */
+  public void beginObject() throws IOException {
+    begin('{', "an object");
+  }
+
+  /**
+   * Consumes the end of an object.
+   */
+  public void endObject() throws IOException {
+    end('}', "the end of an object");
+  }
+
+  /**
+   * Consumes the start of an array.
+   */
+  public void beginArray() throws IOException {
+    begin('[', "an array");
+  }
+
+  /**
+   * Consumes the end of an array.
+   */
+  public void endArray() throws IOException {
+    end(']', "the end of an array");
+  }
+
+  /**
+   * Determines if the current object or array has another element, consuming
+   * the comma that separates it from the previous one.
+   *
+   * @return <b>true</b> if there is another element.
+   */
+  public boolean hasNext() throws IOException {
+    int c = peekChar();
+    if((c == '}') || (c == ']')) {
+      return false;
+    }
+    if((m_depth > 0) && !m_first[m_depth - 1]) {
+      expect(',', "',' or the end of the " +
+             ((c == -1) ? "document" : "object or array"));
+      peekChar();
+    }
+    if(m_depth > 0) {
+      m_first[m_depth - 1] = false;
+    }
+    return true;
+  }
+
+  /**
+   * Reads the name of the next member of an object.
+   *
+   * @return the name of the member.
+   */
+  public String nextName() throws IOException {
+    String name = nextString();
+    expect(':', "':' after the member name \"" + name + "\"");
+    return name;
+  }
+
+  /**
+   * Reads a string value.
+   *
+   * @return the string.
+   */
+  public String nextString() throws IOException {
+    expect('"', "a string");
+    m_text.setLength(0);
+    while(true) {
+      int c = read();
+      if(c == -1) {
+        throw error("unterminated string");
+      }
+      if(c == '"') {
+        return m_text.toString();
+      }
+      if(c == '\\') {
+        c = read();
+        switch(c) {
+          case 'b': m_text.append('\b'); break;
+          case 'f': m_text.append('\f'); break;
+          case 'n': m_text.append('\n'); break;
+          case 'r': m_text.append('\r'); break;
+          case 't': m_text.append('\t'); break;
+          case 'u':
+            int value = 0;
+            for(int i = 0; i < 4; i++) {
+              int digit = Character.digit(read(), 16);
+              if(digit < 0) {
+                throw error("invalid unicode escape");
+              }
+              value = (value * 16) + digit;
+            }
+            m_text.append((char)value);
+            break;
+          case '"':
+          case '\\':
+          case '/':
+            m_text.append((char)c);
+            break;
+          default:
+            throw error("invalid escape sequence");
+        }
+      } else {
+        m_text.append((char)c);
+      }
+    }
+  }
+
+  /**
+   * Reads a number value.
+   *
+   * @return the number.
+   */
+  public double nextDouble() throws IOException {
+    if(peek() != Token.kNumber) {
+      throw error("expected a number");
+    }
+
+    m_text.setLength(0);
+    while(true) {
+      int c = peekRaw();
+      if(((c >= '0') && (c <= '9')) || (c == '-') || (c == '+') ||
+         (c == '.') || (c == 'e') || (c == 'E')) {
+        m_text.append((char)read());
+      } else {
+        break;
+      }
+    }
+
+    try {
+      return Double.parseDouble(m_text.toString());
+    } catch(NumberFormatException e) {
+      throw error("invalid number \"" + m_text + "\"");
+    }
+  }
+
+  /**
+   * Reads a boolean value.
+   *
+   * @return the boolean.
+   */
+  public boolean nextBoolean() throws IOException {
+    if(peekChar() == 't') {
+      literal("true");
+      return true;
+    }
+    if(peekChar() == 'f') {
+      literal("false");
+      return false;
+    }
+    throw error("expected a boolean");
+  }
+
+  /**
+   * Reads a null value if it is next in the document.
+   *
+   * @return <b>true</b> if a null was read, or <b>false</b> if the next value
+   *         is not null (in which case it is not consumed).
+   */
+  public boolean nextNull() throws IOException {
+    if(peekChar() != 'n') {
+      return false;
+    }
+    literal("null");
+    return true;
+  }
+
+  /**
+   * Skips the next value, including everything inside it if it is an object
+   * or array.
+   */
+  public void skipValue() throws IOException {
+    switch(peek()) {
+      case kBeginObject:
+        beginObject();
+        while(hasNext()) {
+          nextName();
+          skipValue();
+        }
+        endObject();
+        break;
+      case kBeginArray:
+        beginArray();
+        while(hasNext()) {
+          skipValue();
+        }
+        endArray();
+        break;
+      case kString:
+        nextString();
+        break;
+      case kNumber:
+        nextDouble();
+        break;
+      case kBoolean:
+        nextBoolean();
+        break;
+      case kNull:
+        nextNull();
+        break;
+      default:
+        throw error("expected a value");
+    }
+  }
+
+  /**
+   * Creates an exception describing a problem at the current position in the
+   * document. This is used by callers to report values that are valid JSON
+   * but not what they expected.
+   *
+   * @param message is the description of the problem.
+   *
+   * @return the exception to throw.
+   */
+  public JsonException error(String message) {
+    return new JsonException(m_source + ":" + m_line + ":" + m_column + ": " +
+                             message);
+  }
+
+  @Override
+  public void close() throws IOException {
+    m_reader.close();
+  }
+
+  private void begin(char c, String description) throws IOException {
+    expect(c, description);
+    if(m_depth == kMaxDepth) {
+      throw error("nested too deeply");
+    }
+    m_first[m_depth++] = true;
+  }
+
+  private void end(char c, String description) throws IOException {
+    expect(c, description);
+    m_depth--;
+  }
+
+  private void literal(String text) throws IOException {
+    for(int i = 0; i < text.length(); i++) {
+      if(read() != text.charAt(i)) {
+        throw error("expected " + text);
+      }
+    }
+  }
+
+  private void expect(char c, String description) throws IOException {
+    if(peekChar() != c) {
+      throw error("expected " + description);
+    }
+    read();
+  }
+
+  private int peekChar() throws IOException {
+    while(true) {
+      int c = peekRaw();
+      if((c == ' ') || (c == '\t') || (c == '\n') || (c == '\r')) {
+        read();
+      } else {
+        return c;
+      }
+    }
+  }
+
+  private int peekRaw() throws IOException {
+    if(m_position == m_limit) {
+      m_limit = m_reader.read(m_buffer, 0, m_buffer.length);
+      m_position = 0;
+      if(m_limit <= 0) {
+        m_limit = 0;
+        return -1;
+      }
+    }
+    return m_buffer[m_position];
+  }
+
+  private int read() throws IOException {
+    int c = peekRaw();
+    if(c == -1) {
+      return -1;
+    }
+    m_position++;
+    if(c == '\n') {
+      m_line++;
+      m_column = 1;
+    } else {
+      m_column++;
+    }
+    return c;
+  }
+
+  /**
+   * The exception thrown when a JSON document can not be read.
+   */
+  public static class JsonException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates an exception.
+     *
+     * @param message is the description of the problem, including where it
+     *                was found.
+     */
+    public JsonException(String message) {
+      super(message);
+    }
+  }
+}
@@ -5,31 +5,80 @@
 
 package frc.robot.utils;
 
-import static java.util.stream.Collectors.joining;
-
-import java.util.stream.Stream;
-
 import edu.wpi.first.wpilibj.DataLogManager;
 import edu.wpi.first.wpilibj2.command.Command;
 
 /**
  * This class provides methods for logging messages to the RioLog as the robot
  * starts, the robot mode changes, and as commands start and end.
+ *
+ * <p>Messages are not formatted by the caller. Instead, the time and the
+ * pieces of the message are placed into a preallocated queue, and a
+ * background thread formats and writes them. Command class names are looked
+ * up once and cached, so logging the start and end of a command does not
+ * allocate anything on the robot thread.
  */
 public final class Log {
+  /**
+   * The number of messages that can be waiting to be written. Messages
+   * logged while the queue is full are dropped (and counted).
+   */
+  private static final int kQueueSize = 256;
+
+  /**
+   * The kinds of messages, which select the text placed before the message.
+   */
+  private static final int kMessage = 0;
+  private static final int kStart = 1;
+  private static final int kInterrupted = 2;
+  private static final int kEnd = 3;
+
   /**
    * The time that the robot code started.
    */
   private static final long startTime = System.currentTimeMillis();
 
   /**
-   * Formats a message and writes it to the RioLog.
+   * The simple names of the command classes, computed the first time each
+   * class is logged.
+   */
+  private static final ClassValue<String> m_names = new ClassValue<String>() {
+    @Override
+    protected String computeValue(Class<?> type) {
+      return type.getSimpleName();
+    }
+  };
+
+  /**
+   * The queue of messages waiting to be written, stored as parallel arrays
+   * used as a ring buffer. All access is synchronized on m_times.
+   */
+  private static final long[] m_times = new long[kQueueSize];
+  private static final int[] m_kinds = new int[kQueueSize];
+  private static final String[] m_texts = new String[kQueueSize];
+  private static final Object[][] m_settings = new Object[kQueueSize][];
+  private static int m_head = 0;
+  private static int m_count = 0;
+  private static int m_dropped = 0;
+
+  /**
+   * The thread that formats and writes the queued messages.
+   */
+  private static final Thread m_writer = new Thread(Log::write, "Log");
+
+  static {
+    m_writer.setDaemon(true);
+    m_writer.start();
+  }
+
+  /**
+   * Writes a message to the RioLog, prefixed by the time since the robot code
+   * started.
    *
    * @param message contains the text of the message to be logged.
    */
   public static void log(String message) {
-    long time = System.currentTimeMillis() - startTime;
-    DataLogManager.log(String.format("[%6.2f] %s\n", time / 1000.0, message));
+    enqueue(kMessage, message, null);
   }
 
   /**
@@ -56,7 +105,7 @@ public final class Log {
    * @param command is the command class that is starting.
    */
   public static void init(Command command) {
-    log("--> Start command: " + command.getClass().getSimpleName());
+    enqueue(kStart, m_names.get(command.getClass()), null);
   }
 
   /**
@@ -64,12 +113,12 @@ public final class Log {
    *
    * @param command is the command class that is starting.
    *
-   * @param settings are the parameters used when starting the command.
+   * @param settings are the parameters used when starting the command. They
+   *                 are converted to strings by the writer thread, so should
+   *                 be immutable values.
    */
   public static void init(Command command, Object... settings) {
-    log("--> Start command: " + command.getClass().getSimpleName() + " (" +
-        Stream.of(settings).map(Object::toString).collect(joining(", ")) +
-        ")");
+    enqueue(kStart, m_names.get(command.getClass()), settings);
   }
 
   /**
@@ -80,11 +129,142 @@ public final class Log {
    * @param interrupted is <b>true</b> if the command was interrupted.
    */
   public static void end(Command command, boolean interrupted) {
-    String name = command.getClass().getSimpleName();
-    if(interrupted) {
-      log("--> Interrupted command: " + name);
-    } else {
-      log("--> End command: " + name);
+    enqueue(interrupted ? kInterrupted : kEnd,
+            m_names.get(command.getClass()), null);
+  }
+
+  /**
+   * Places a message into the queue to be written.
+   *
+   * @param kind is the kind of message.
+   *
+   * @param text is the text of the message, or the name of the command.
+   *
+   * @param settings are the parameters used when starting the command, or
+   *                 <b>null</b> if there are none.
+   */
+  private static void enqueue(int kind, String text, Object[] settings) {
+    long time = System.currentTimeMillis() - startTime;
+
+    synchronized(m_times) {
+      if(m_count == kQueueSize) {
+        m_dropped++;
+        return;
+      }
+
+      int slot = (m_head + m_count) % kQueueSize;
+      m_times[slot] = time;
+      m_kinds[slot] = kind;
+      m_texts[slot] = text;
+      m_settings[slot] = settings;
+      m_count++;
+
+      m_times.notify();
+    }
+  }
+
+  /**
+   * Formats and writes the queued messages, run by the writer thread.
+   */
+  private static void write() {
+    StringBuilder builder = new StringBuilder(256);
+
+    while(true) {
+      long time;
+      int kind;
+      String text;
+      Object[] settings;
+      int dropped;
+
+      synchronized(m_times) {
+        while((m_count == 0) && (m_dropped == 0)) {
+          try {
+            m_times.wait();
+          } catch(InterruptedException e) {
+            return;
+          }
+        }
+
+        dropped = m_dropped;
+        m_dropped = 0;
+
+        if(m_count == 0) {
+          kind = -1;
+          time = 0;
+          text = null;
+          settings = null;
+        } else {
+          time = m_times[m_head];
+          kind = m_kinds[m_head];
+          text = m_texts[m_head];
+          settings = m_settings[m_head];
+          m_texts[m_head] = null;
+          m_settings[m_head] = null;
+          m_head = (m_head + 1) % kQueueSize;
+          m_count--;
+        }
+      }
+
+      if(dropped != 0) {
+        DataLogManager.log("Log queue full, dropped " + dropped +
+                           " messages\n");
+      }
+      if(kind < 0) {
+        continue;
+      }
+
+      builder.setLength(0);
+      appendTime(builder, time);
+      switch(kind) {
+        case kStart:
+          builder.append("--> Start command: ");
+          break;
+        case kInterrupted:
+          builder.append("--> Interrupted command: ");
+          break;
+        case kEnd:
+          builder.append("--> End command: ");
+          break;
+        default:
+          break;
+      }
+      builder.append(text);
+      if(settings != null) {
+        builder.append(" (");
+        for(int i = 0; i < settings.length; i++) {
+          if(i != 0) {
+            builder.append(", ");
+          }
+          builder.append(settings[i]);
+        }
+        builder.append(')');
+      }
+      builder.append('\n');
+
+      DataLogManager.log(builder.toString());
+    }
+  }
+
+  /**
+   * Formats a time in the same way as "[%6.2f] ", without allocating.
+   *
+   * @param builder is where the time is formatted into.
+   *
+   * @param time is the time since the robot code started, in milliseconds.
+   */
+  private static void appendTime(StringBuilder builder, long time) {
+    long hundredths = (time + 5) / 10;
+    long seconds = hundredths / 100;
+    int fraction = (int)(hundredths % 100);
+
+    builder.append('[');
+    for(long width = 100; (width > 1) && (seconds < width); width /= 10) {
+      builder.append(' ');
+    }
+    builder.append(seconds).append('.');
+    if(fraction < 10) {
+      builder.append('0');
     }
+    builder.append(fraction).append("] ");
   }
 }
@@ -0,0 +1,290 @@
+// Copyright (c) 2022 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import static frc.robot.Constants.Profiler.kPublishPeriod;
+import static frc.robot.Constants.Profiler.kWindow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+
+/**
+ * This class measures how long each part of the robot loop takes, so that
+ * loop overruns can be traced back to the subsystem or command that caused
+ * them. Each profiled section keeps its most recent timings in a
+ * preallocated ring buffer, and the median, 99th percentile and maximum of
+ * each section are published to NetworkTables (under "Profiler") and the
+ * data log once a second.
+ *
+ * <p>Subsystems are profiled by calling {@link Section#start} and
+ * {@link Section#stop} around the body of their periodic() method. Commands
+ * are profiled through the command scheduler's execute callback, which runs
+ * just after each command's execute(); the time charged to a command is the
+ * time since the previous profiled section or command finished. This also
+ * includes the isFinished() and end() of the command before it (and the
+ * button polling, for the first command), so command timings are an upper
+ * bound.
+ *
+ * <p>Work that runs on its own thread, outside of the robot loop, is profiled
+ * with a section from {@link #threadSection}, so that its timings are not
+ * charged to the next command.
+ *
+ * <p>Nothing is allocated while the robot is running, except for the first
+ * time that a command of each name is executed.
+ */
+public final class LoopProfiler {
+  //
+  // The sections that are being profiled.
+  //
+  private static final ArrayList<Section> m_sections = new ArrayList<Section>();
+
+  //
+  // The sections used to profile the commands, created the first time that a
+  // command of each name is executed. They are keyed by name, since each
+  // section publishes under its command's name; all instances of a command
+  // (such as one bound to several buttons) share a section.
+  //
+  private static final Map<String, Section> m_commands =
+    new HashMap<String, Section>();
+
+  //
+  // A scratch buffer used to sort the timings when computing percentiles.
+  //
+  private static final long[] m_sorted = new long[kWindow];
+
+  //
+  // The section that measures the entire command scheduler run.
+  //
+  private static Section m_scheduler;
+
+  //
+  // The time that the most recent section or command finished.
+  //
+  private static long m_mark;
+
+  //
+  // The time that the statistics were last published.
+  //
+  private static long m_lastPublish;
+
+  /**
+   * Starts profiling commands. Should be called at robot startup time.
+   */
+  public static void start() {
+    m_scheduler = section("Scheduler");
+    m_lastPublish = System.nanoTime();
+    CommandScheduler.getInstance().onCommandExecute(LoopProfiler::executed);
+  }
+
+  /**
+   * Creates a profiled section.
+   *
+   * @param name is the name that the section's statistics are published
+   *             under.
+   *
+   * @return the new section.
+   */
+  public static Section section(String name) {
+    Section section = new Section(name, true);
+    m_sections.add(section);
+    return section;
+  }
+
+  /**
+   * Creates a profiled section for work that runs on a thread other than
+   * the robot loop. Its start() and stop() may be called from that thread.
+   *
+   * @param name is the name that the section's statistics are published
+   *             under.
+   *
+   * @return the new section.
+   */
+  public static Section threadSection(String name) {
+    Section section = new Section(name, false);
+    m_sections.add(section);
+    return section;
+  }
+
+  /**
+   * Marks the start of the command scheduler run. Should be called from
+   * robotPeriodic() just before the command scheduler is run.
+   */
+  public static void startLoop() {
+    m_scheduler.start();
+  }
+
+  /**
+   * Marks the end of the command scheduler run, and publishes the statistics
+   * if it is time to do so. Should be called from robotPeriodic() just after
+   * the command scheduler is run.
+   */
+  public static void endLoop() {
+    m_scheduler.stop();
+
+    if((m_mark - m_lastPublish) >= (long)(kPublishPeriod * 1e9)) {
+      m_lastPublish = m_mark;
+      for(int i = 0; i < m_sections.size(); i++) {
+        m_sections.get(i).publish();
+      }
+    }
+  }
+
+  /**
+   * Records the time taken by a command, called by the command scheduler
+   * after the command is executed.
+   *
+   * @param command is the command that was executed.
+   */
+  private static void executed(Command command) {
+    long now = System.nanoTime();
+    String name = command.getName();
+    Section section = m_commands.get(name);
+
+    if(section == null) {
+      section = section("Commands/" + name);
+      m_commands.put(name, section);
+    }
+
+    section.record(now - m_mark);
+    m_mark = now;
+  }
+
+  /**
+   * A part of the robot loop that is profiled.
+   */
+  public static final class Section {
+    //
+    // The most recent timings of the section, in nanoseconds.
+    //
+    private final long[] m_samples = new long[kWindow];
+
+    //
+    // The number of valid timings in the ring buffer.
+    //
+    private int m_count = 0;
+
+    //
+    // The index in the ring buffer where the next timing is recorded.
+    //
+    private int m_next = 0;
+
+    //
+    // True if a timing has been recorded since the last publish.
+    //
+    private boolean m_updated = false;
+
+    //
+    // The time that the section was started.
+    //
+    private long m_start;
+
+    //
+    // True if the section is part of the robot loop.
+    //
+    private final boolean m_inLoop;
+
+    private final NetworkTableEntry m_p50Entry;
+    private final NetworkTableEntry m_p99Entry;
+    private final NetworkTableEntry m_maxEntry;
+    private final DoubleLogEntry m_logP50;
+    private final DoubleLogEntry m_logP99;
+    private final DoubleLogEntry m_logMax;
+
+    private Section(String name, boolean inLoop) {
+      m_inLoop = inLoop;
+
+      NetworkTable table =
+        NetworkTableInstance.getDefault().getTable("Profiler").
+        getSubTable(name);
+      m_p50Entry = table.getEntry("p50");
+      m_p99Entry = table.getEntry("p99");
+      m_maxEntry = table.getEntry("max");
+
+      String prefix = "/profiler/" + name + "/";
+      m_logP50 = new DoubleLogEntry(DataLogManager.getLog(), prefix + "p50",
+                                    "ms");
+      m_logP99 = new DoubleLogEntry(DataLogManager.getLog(), prefix + "p99",
+                                    "ms");
+      m_logMax = new DoubleLogEntry(DataLogManager.getLog(), prefix + "max",
+                                    "ms");
+    }
+
+    /**
+     * Marks the start of the section.
+     */
+    public void start() {
+      m_start = System.nanoTime();
+    }
+
+    /**
+     * Marks the end of the section, recording the time since it was started.
+     */
+    public void stop() {
+      long now = System.nanoTime();
+      record(now - m_start);
+      if(m_inLoop) {
+        m_mark = now;
+      }
+    }
+
+    /**
+     * Records a timing into the ring buffer.
+     *
+     * @param nanoseconds is the time taken by the section.
+     */
+    private synchronized void record(long nanoseconds) {
+      m_samples[m_next] = nanoseconds;
+      m_next = (m_next + 1) % kWindow;
+      if(m_count < kWindow) {
+        m_count++;
+      }
+      m_updated = true;
+    }
+
+    /**
+     * Publishes the statistics of the timings in the ring buffer, if there
+     * have been any new timings since the last publish.
+     */
+    private void publish() {
+      int count;
+
+      // The timings of a thread section are recorded by another thread, so
+      // take a copy of them while holding the lock.
+      synchronized(this) {
+        if(!m_updated) {
+          return;
+        }
+        m_updated = false;
+        count = m_count;
+        System.arraycopy(m_samples, 0, m_sorted, 0, count);
+      }
+
+      // The window is small enough that sorting a long[] does not allocate.
+      Arrays.sort(m_sorted, 0, count);
+
+      double p50 = m_sorted[(count - 1) / 2] / 1e6;
+      double p99 = m_sorted[((count - 1) * 99) / 100] / 1e6;
+      double max = m_sorted[count - 1] / 1e6;
+
+      m_p50Entry.setDouble(p50);
+      m_p99Entry.setDouble(p99);
+      m_maxEntry.setDouble(max);
+      m_logP50.append(p50);
+      m_logP99.append(p99);
+      m_logMax.append(max);
+    }
+  }
+}
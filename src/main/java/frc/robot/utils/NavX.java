@@ -5,19 +5,44 @@
 
 package frc.robot.utils;
 
+import static frc.robot.Constants.Drive.kOdometryRate;
+
 import com.kauailabs.navx.frc.AHRS;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.util.sendable.SendableBuilder;
+import edu.wpi.first.wpilibj.RobotBase;
 import edu.wpi.first.wpilibj.SPI;
 
 public class NavX extends AHRS {
+  private final boolean m_simulated = RobotBase.isSimulation();
+  private volatile double m_simAngle = 0;
+
+  /**
+   * Creates a new NavX on the MXP SPI port, updating at the odometry rate
+   * so that each update of the odometry thread sees a new heading.
+   */
   public NavX() {
-    super(SPI.Port.kMXP);
+    super(SPI.Port.kMXP, (byte)kOdometryRate);
+  }
+
+  /**
+   * Sets the angle reported by the NavX in simulation, where there is no
+   * NavX to read.
+   *
+   * @param angle is the angle of the robot, in degrees, counter-clockwise
+   *              positive and not wrapped.
+   */
+  public void setSimAngle(double angle) {
+    m_simAngle = angle;
   }
 
   @Override
   public float getYaw() {
+    if(m_simulated) {
+      return (float)MathUtil.inputModulus(m_simAngle, -180, 180);
+    }
     return -super.getYaw();
   }
 
@@ -26,6 +51,9 @@ public class NavX extends AHRS {
   // to be a positive angle, so this handles that difference.
   @Override
   public double getAngle() {
+    if(m_simulated) {
+      return m_simAngle;
+    }
     return -super.getAngle();
   }
 
@@ -0,0 +1,158 @@
+package frc.robot.utils.PathPlanner;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * A cubic Bezier segment of a path with closed form derivatives and a precomputed arc length
+ * table, so that it can be sampled by distance instead of by t.
+ *
+ * <p>The arc length table splits t into equal intervals and integrates the speed |B'(t)| across
+ * each one with 5 point Gauss-Legendre quadrature, which is accurate to well under a millimeter for
+ * the segments drawn in PathPlanner.
+ */
+class BezierSegment {
+    private static final int TABLE_SIZE = 16;
+    private static final int NEWTON_ITERATIONS = 4;
+
+    private static final double[] GL_NODES = {
+        0.0,
+        -0.5384693101056831, 0.5384693101056831,
+        -0.9061798459386640, 0.9061798459386640
+    };
+    private static final double[] GL_WEIGHTS = {
+        0.5688888888888889,
+        0.4786286704993665, 0.4786286704993665,
+        0.2369268850561891, 0.2369268850561891
+    };
+
+    // Power basis coefficients, B(t) = a*t^3 + b*t^2 + c*t + d
+    private final double ax, bx, cx, dx;
+    private final double ay, by, cy, dy;
+
+    private final double[] lengths = new double[TABLE_SIZE + 1];
+
+    /**
+     * Create a segment from its control points
+     * @param p0 The start anchor
+     * @param p1 The start control point
+     * @param p2 The end control point
+     * @param p3 The end anchor
+     */
+    BezierSegment(Translation2d p0, Translation2d p1, Translation2d p2, Translation2d p3){
+        ax = -p0.getX() + (3 * p1.getX()) - (3 * p2.getX()) + p3.getX();
+        bx = (3 * p0.getX()) - (6 * p1.getX()) + (3 * p2.getX());
+        cx = (-3 * p0.getX()) + (3 * p1.getX());
+        dx = p0.getX();
+
+        ay = -p0.getY() + (3 * p1.getY()) - (3 * p2.getY()) + p3.getY();
+        by = (3 * p0.getY()) - (6 * p1.getY()) + (3 * p2.getY());
+        cy = (-3 * p0.getY()) + (3 * p1.getY());
+        dy = p0.getY();
+
+        for(int i = 0; i < TABLE_SIZE; i++){
+            lengths[i + 1] = lengths[i] + integrate((double) i / TABLE_SIZE, (double) (i + 1) / TABLE_SIZE);
+        }
+    }
+
+    /**
+     * Get the position on the segment
+     * @param t The parameter, from 0 to 1
+     * @return The position at t
+     */
+    Translation2d getPosition(double t){
+        return new Translation2d(((ax * t + bx) * t + cx) * t + dx, ((ay * t + by) * t + cy) * t + dy);
+    }
+
+    /**
+     * Get the direction of travel along the segment
+     * @param t The parameter, from 0 to 1
+     * @return The heading in radians, or NaN if the segment is not moving at t
+     */
+    double getHeading(double t){
+        double vx = velocityX(t);
+        double vy = velocityY(t);
+        if(Math.hypot(vx, vy) < 1E-9) return Double.NaN;
+        return Math.atan2(vy, vx);
+    }
+
+    /**
+     * Get the signed curvature of the segment, positive when turning left
+     * @param t The parameter, from 0 to 1
+     * @return The curvature in radians per meter, or NaN if the segment is not moving at t
+     */
+    double getCurvature(double t){
+        double vx = velocityX(t);
+        double vy = velocityY(t);
+        double speed = Math.hypot(vx, vy);
+        if(speed < 1E-9) return Double.NaN;
+
+        double accX = (6 * ax * t) + (2 * bx);
+        double accY = (6 * ay * t) + (2 * by);
+        return ((vx * accY) - (vy * accX)) / (speed * speed * speed);
+    }
+
+    /**
+     * Get the length of the segment
+     * @return The arc length in meters
+     */
+    double getLength(){
+        return lengths[TABLE_SIZE];
+    }
+
+    /**
+     * Find the parameter at a distance along the segment
+     * @param distance The arc length from the start of the segment
+     * @return The parameter t at that distance
+     */
+    double getParameter(double distance){
+        if(distance <= 0) return 0;
+        if(distance >= getLength()) return 1;
+
+        int low = 0;
+        int high = TABLE_SIZE;
+        while(high - low > 1){
+            int mid = (low + high) / 2;
+            if(lengths[mid] <= distance){
+                low = mid;
+            }else{
+                high = mid;
+            }
+        }
+
+        double t0 = (double) low / TABLE_SIZE;
+        double t1 = (double) high / TABLE_SIZE;
+        double target = distance - lengths[low];
+
+        // Start from a linear guess within the table interval, then refine with Newton's method
+        double t = t0 + ((t1 - t0) * target / (lengths[high] - lengths[low]));
+        for(int i = 0; i < NEWTON_ITERATIONS; i++){
+            double speed = Math.hypot(velocityX(t), velocityY(t));
+            if(speed < 1E-9) break;
+
+            double error = integrate(t0, t) - target;
+            t = Math.max(t0, Math.min(t1, t - (error / speed)));
+            if(Math.abs(error) < 1E-9) break;
+        }
+        return t;
+    }
+
+    private double integrate(double t0, double t1){
+        double half = (t1 - t0) / 2;
+        double mid = (t0 + t1) / 2;
+
+        double sum = 0;
+        for(int i = 0; i < GL_NODES.length; i++){
+            double t = mid + (half * GL_NODES[i]);
+            sum += GL_WEIGHTS[i] * Math.hypot(velocityX(t), velocityY(t));
+        }
+        return sum * half;
+    }
+
+    private double velocityX(double t){
+        return ((3 * ax * t) + (2 * bx)) * t + cx;
+    }
+
+    private double velocityY(double t){
+        return ((3 * ay * t) + (2 * by)) * t + cy;
+    }
+}
@@ -1,19 +1,35 @@
 package frc.robot.utils.PathPlanner;
 
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Filesystem;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.trajectory.Trajectory;
-
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
+import frc.robot.utils.JsonReader;
 
 import java.io.*;
 import java.util.ArrayList;
 
 public class PathPlanner2 {
-    protected static double resolution = 0.004;
+    // The shortest distance in meters between samples of a spline, however tight it is
+    protected static double minStepLength = 0.004;
+    protected static double maxPositionError = 0.002;
+    protected static double maxHeadingError = Math.toRadians(2);
+    protected static double maxStepLength = 0.05;
+
+    /**
+     * Set the tolerances used when sampling the splines of a path. Each spline is sampled by
+     * distance, with the samples spaced by the local curvature so that the straight line between
+     * consecutive samples is within these tolerances of the spline.
+     * @param positionError The maximum distance in meters between the spline and a sample step
+     * @param headingError The maximum change in heading in radians across a sample step
+     * @param stepLength The maximum length in meters of a sample step
+     */
+    public static void setTolerances(double positionError, double headingError, double stepLength){
+        maxPositionError = positionError;
+        maxHeadingError = headingError;
+        maxStepLength = stepLength;
+    }
 
     /**
      * Load a path file from storage
@@ -24,75 +40,214 @@ public class PathPlanner2 {
      * @return The generated path
      */
     public static PathPlannerTrajectory2 loadPath(String name, double maxVel, double maxAccel, boolean reversed) {
-        try(BufferedReader br = new BufferedReader(new FileReader(new File(Filesystem.getDeployDirectory(), "pathplanner/" + name + ".path")))){
-            StringBuilder fileContentBuilder = new StringBuilder();
-            String line;
-            while((line = br.readLine()) != null){
-                fileContentBuilder.append(line);
+        return loadPath(Filesystem.getDeployDirectory(), name, maxVel, maxAccel, reversed);
+    }
+
+    /**
+     * Load a path file from a deploy directory, using the precompiled trajectory cache when it
+     * is up to date with the path file and falling back to generating it from the JSON otherwise.
+     * If the path can not be loaded, the error is reported to the driver station.
+     * @param deployDir The deploy directory containing the pathplanner directory
+     * @param name The name of the path to load
+     * @param maxVel Max velocity of the path
+     * @param maxAccel Max velocity of the path
+     * @param reversed Should the robot follow the path reversed
+     * @return The generated path, or null if it could not be loaded
+     */
+    public static PathPlannerTrajectory2 loadPath(File deployDir, String name, double maxVel, double maxAccel, boolean reversed) {
+        File pathFile = getPathFile(deployDir, name);
+
+        try {
+            long hash = TrajectoryCache.hash(pathFile, maxVel, maxAccel, reversed);
+            PathPlannerTrajectory2 cached = TrajectoryCache.read(TrajectoryCache.getFile(deployDir, name), hash);
+            if(cached != null){
+                return cached;
             }
+        }catch (IOException e){
+            // The cache is unreadable, so fall back to the path file.
+        }
 
-            String fileContent = fileContentBuilder.toString();
+        try {
+            return loadJsonPath(pathFile, maxVel, maxAccel, reversed);
+        }catch (IOException e){
+            DriverStation.reportError("Unable to load path " + name + ": " + e.getMessage(), false);
+            return null;
+        }
+    }
 
-            JSONObject json = (JSONObject) new JSONParser().parse(fileContent);
-            JSONArray jsonWaypoints = (JSONArray) json.get("waypoints");
+    /**
+     * Generate a path from its path file and write it into the precompiled trajectory cache
+     * @param deployDir The deploy directory containing the pathplanner directory
+     * @param name The name of the path to cache
+     * @param maxVel Max velocity of the path
+     * @param maxAccel Max velocity of the path
+     * @param reversed Should the robot follow the path reversed
+     * @throws IOException If the path file can not be read or the cache file can not be written
+     */
+    public static void cachePath(File deployDir, String name, double maxVel, double maxAccel, boolean reversed) throws IOException {
+        File pathFile = getPathFile(deployDir, name);
+        PathPlannerTrajectory2 trajectory = loadJsonPath(pathFile, maxVel, maxAccel, reversed);
 
-            ArrayList<PathPlannerTrajectory2.Waypoint> waypoints = new ArrayList<>();
+        TrajectoryCache.write(TrajectoryCache.getFile(deployDir, name), TrajectoryCache.hash(pathFile, maxVel, maxAccel, reversed), trajectory);
+    }
 
-            for (Object waypoint : jsonWaypoints) {
-                JSONObject jsonWaypoint = (JSONObject) waypoint;
+    private static File getPathFile(File deployDir, String name){
+        return new File(deployDir, "pathplanner/" + name + ".path");
+    }
 
-                JSONObject jsonAnchor = (JSONObject) jsonWaypoint.get("anchorPoint");
-                Translation2d anchorPoint = new Translation2d((double) jsonAnchor.get("x"), (double) jsonAnchor.get("y"));
+    protected static PathPlannerTrajectory2 loadJsonPath(File pathFile, double maxVel, double maxAccel, boolean reversed) throws IOException {
+        return generatePath(splitPath(loadWaypoints(pathFile)), maxVel, maxAccel, reversed);
+    }
 
-                JSONObject jsonPrevControl = (JSONObject) jsonWaypoint.get("prevControl");
-                Translation2d prevControl = null;
-                if (jsonPrevControl != null) {
-                    prevControl = new Translation2d((double) jsonPrevControl.get("x"), (double) jsonPrevControl.get("y"));
-                }
+    /**
+     * Read the waypoints of a path file
+     * @param pathFile The path file
+     * @return The waypoints of the path
+     * @throws IOException If the path file can not be read or is not a valid path
+     */
+    protected static ArrayList<PathPlannerTrajectory2.Waypoint> loadWaypoints(File pathFile) throws IOException {
+        try(JsonReader reader = new JsonReader(new BufferedReader(new FileReader(pathFile)), pathFile.getName())){
+            ArrayList<PathPlannerTrajectory2.Waypoint> waypoints = null;
 
-                JSONObject jsonNextControl = (JSONObject) jsonWaypoint.get("nextControl");
-                Translation2d nextControl = null;
-                if (jsonNextControl != null) {
-                    nextControl = new Translation2d((double) jsonNextControl.get("x"), (double) jsonNextControl.get("y"));
+            reader.beginObject();
+            while(reader.hasNext()){
+                if(reader.nextName().equals("waypoints")){
+                    waypoints = new ArrayList<>();
+                    reader.beginArray();
+                    while(reader.hasNext()){
+                        waypoints.add(readWaypoint(reader));
+                    }
+                    reader.endArray();
+                }else{
+                    reader.skipValue();
                 }
+            }
+            reader.endObject();
 
-                Rotation2d holonomicAngle = Rotation2d.fromDegrees((double) jsonWaypoint.get("holonomicAngle"));
-                boolean isReversal = (boolean) jsonWaypoint.get("isReversal");
-                double velOverride = -1;
-                if (jsonWaypoint.get("velOverride") != null) {
-                    velOverride = (double) jsonWaypoint.get("velOverride");
-                }
+            if(waypoints == null || waypoints.size() < 2){
+                throw reader.error("path must have at least two waypoints");
+            }
+            return waypoints;
+        }
+    }
+
+    private static PathPlannerTrajectory2.Waypoint readWaypoint(JsonReader reader) throws IOException {
+        Translation2d anchorPoint = null;
+        Translation2d prevControl = null;
+        Translation2d nextControl = null;
+        double holonomicAngle = 0;
+        boolean isReversal = false;
+        double velOverride = -1;
 
-                waypoints.add(new PathPlannerTrajectory2.Waypoint(anchorPoint, prevControl, nextControl, velOverride, holonomicAngle, isReversal));
+        reader.beginObject();
+        while(reader.hasNext()){
+            switch(reader.nextName()){
+                case "anchorPoint":
+                    anchorPoint = readPoint(reader);
+                    break;
+                case "prevControl":
+                    prevControl = readPoint(reader);
+                    break;
+                case "nextControl":
+                    nextControl = readPoint(reader);
+                    break;
+                case "holonomicAngle":
+                    holonomicAngle = reader.nextDouble();
+                    break;
+                case "isReversal":
+                    isReversal = reader.nextBoolean();
+                    break;
+                case "velOverride":
+                    if(!reader.nextNull()){
+                        velOverride = reader.nextDouble();
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
             }
+        }
 
-            ArrayList<ArrayList<PathPlannerTrajectory2.Waypoint>> splitPaths = new ArrayList<>();
-            ArrayList<PathPlannerTrajectory2.Waypoint> currentPath = new ArrayList<>();
+        if(anchorPoint == null){
+            throw reader.error("waypoint is missing its anchorPoint");
+        }
+        reader.endObject();
 
-            for(int i = 0; i < waypoints.size(); i++){
-                PathPlannerTrajectory2.Waypoint w = waypoints.get(i);
+        return new PathPlannerTrajectory2.Waypoint(anchorPoint, prevControl, nextControl, velOverride, Rotation2d.fromDegrees(holonomicAngle), isReversal);
+    }
 
-                currentPath.add(w);
+    private static Translation2d readPoint(JsonReader reader) throws IOException {
+        if(reader.nextNull()){
+            return null;
+        }
 
-                if(w.isReversal || i == waypoints.size() - 1){
-                    splitPaths.add(currentPath);
-                    currentPath = new ArrayList<>();
-                    currentPath.add(w);
-                }
+        double x = Double.NaN;
+        double y = Double.NaN;
+
+        reader.beginObject();
+        while(reader.hasNext()){
+            switch(reader.nextName()){
+                case "x":
+                    x = reader.nextDouble();
+                    break;
+                case "y":
+                    y = reader.nextDouble();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
             }
+        }
+
+        if(Double.isNaN(x) || Double.isNaN(y)){
+            throw reader.error("point is missing its x or y");
+        }
+        reader.endObject();
+
+        return new Translation2d(x, y);
+    }
+
+    /**
+     * Split the waypoints of a path at each reversal
+     * @param waypoints The waypoints of the path
+     * @return The waypoints of each section of the path, with the reversal points in both sections
+     */
+    protected static ArrayList<ArrayList<PathPlannerTrajectory2.Waypoint>> splitPath(ArrayList<PathPlannerTrajectory2.Waypoint> waypoints){
+        ArrayList<ArrayList<PathPlannerTrajectory2.Waypoint>> splitPaths = new ArrayList<>();
+        ArrayList<PathPlannerTrajectory2.Waypoint> currentPath = new ArrayList<>();
+
+        for(int i = 0; i < waypoints.size(); i++){
+            PathPlannerTrajectory2.Waypoint w = waypoints.get(i);
+
+            currentPath.add(w);
 
-            ArrayList<PathPlannerTrajectory2> paths = new ArrayList<>();
-            boolean shouldReverse = reversed;
-            for(int i = 0; i < splitPaths.size(); i++){
-                paths.add(new PathPlannerTrajectory2(splitPaths.get(i), maxVel, maxAccel, shouldReverse));
-                shouldReverse = !shouldReverse;
+            if(w.isReversal || i == waypoints.size() - 1){
+                splitPaths.add(currentPath);
+                currentPath = new ArrayList<>();
+                currentPath.add(w);
             }
+        }
 
-            return joinPaths(paths);
-        }catch (Exception e){
-            e.printStackTrace();
-            return null;
+        return splitPaths;
+    }
+
+    /**
+     * Generate a path from its sections
+     * @param splitPaths The waypoints of each section of the path
+     * @param maxVel Max velocity of the path
+     * @param maxAccel Max velocity of the path
+     * @param reversed Should the robot follow the path reversed
+     * @return The generated path
+     */
+    protected static PathPlannerTrajectory2 generatePath(ArrayList<ArrayList<PathPlannerTrajectory2.Waypoint>> splitPaths, double maxVel, double maxAccel, boolean reversed){
+        ArrayList<PathPlannerTrajectory2> paths = new ArrayList<>();
+        boolean shouldReverse = reversed;
+        for(int i = 0; i < splitPaths.size(); i++){
+            paths.add(new PathPlannerTrajectory2(splitPaths.get(i), maxVel, maxAccel, shouldReverse));
+            shouldReverse = !shouldReverse;
         }
+
+        return joinPaths(paths);
     }
 
     /**
@@ -106,7 +261,7 @@ public class PathPlanner2 {
         return loadPath(name, maxVel, maxAccel, false);
     }
 
-    private static PathPlannerTrajectory2 joinPaths(ArrayList<PathPlannerTrajectory2> paths){
+    protected static PathPlannerTrajectory2 joinPaths(ArrayList<PathPlannerTrajectory2> paths){
         ArrayList<Trajectory.State> joinedStates = new ArrayList<>();
 
         for(int i = 0; i < paths.size(); i++){
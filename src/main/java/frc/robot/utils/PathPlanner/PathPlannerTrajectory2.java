@@ -9,6 +9,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class PathPlannerTrajectory2 extends Trajectory {
+    // The number of times a sample step is shortened to fit the curvature along it
+    private static final int STEP_ITERATIONS = 4;
+
+    private PrimitiveTrajectory primitive;
+
     protected PathPlannerTrajectory2(ArrayList<Waypoint> pathPoints, double maxVel, double maxAccel, boolean reversed){
         super(generatePath(pathPoints, maxVel, maxAccel, reversed));
     }
@@ -47,6 +52,17 @@ public class PathPlannerTrajectory2 extends Trajectory {
         return prevSample.interpolate(sample, (time - prevSample.timeSeconds) / (sample.timeSeconds - prevSample.timeSeconds));
     }
 
+    /**
+     * Get the path as parallel arrays of primitives, which can be sampled without allocating
+     * @return The primitive representation of the path
+     */
+    public synchronized PrimitiveTrajectory getPrimitiveTrajectory(){
+        if(primitive == null){
+            primitive = new PrimitiveTrajectory(this);
+        }
+        return primitive;
+    }
+
     /**
      * Get the initial state of the path
      * @return The first state in the path
@@ -74,7 +90,7 @@ public class PathPlannerTrajectory2 extends Trajectory {
     }
 
     private static List<State> generatePath(ArrayList<Waypoint> pathPoints, double maxVel, double maxAccel, boolean reversed){
-        List<PathPlannerState> joined = joinSplines(pathPoints, maxVel, PathPlanner2.resolution);
+        List<PathPlannerState> joined = joinSplines(pathPoints, maxVel, PathPlanner2.minStepLength);
         calculateMaxVel(joined, maxVel, maxAccel, reversed);
         calculateVelocity(joined, pathPoints, maxAccel);
         recalculateValues(joined, reversed);
@@ -82,34 +98,24 @@ public class PathPlannerTrajectory2 extends Trajectory {
         return new ArrayList<>(joined);
     }
 
-    private static void calculateMaxVel(List<PathPlannerState> states, double maxVel, double maxAccel, boolean reversed){
+    protected static void calculateMaxVel(List<PathPlannerState> states, double maxVel, double maxAccel, boolean reversed){
         for(int i = 0; i < states.size(); i++){
-            double radius;
-            if(i == states.size() - 1){
-                radius = calculateRadius(states.get(i - 2), states.get(i - 1), states.get(i));
-            }else if(i == 0){
-                radius = calculateRadius(states.get(i), states.get(i + 1), states.get(i + 2));
-            }else{
-                radius = calculateRadius(states.get(i - 1), states.get(i), states.get(i + 1));
-            }
+            PathPlannerState state = states.get(i);
 
             if(reversed){
-                radius *= -1;
+                state.curveRadius *= -1;
             }
 
-            if(!Double.isFinite(radius) || Double.isNaN(radius)){
-                states.get(i).velocityMetersPerSecond = Math.min(maxVel, states.get(i).velocityMetersPerSecond);
+            if(Double.isFinite(state.curveRadius)){
+                double maxVCurve = Math.sqrt(maxAccel * Math.abs(state.curveRadius));
+                state.velocityMetersPerSecond = Math.min(maxVCurve, state.velocityMetersPerSecond);
             }else{
-                states.get(i).curveRadius = radius;
-
-                double maxVCurve = Math.sqrt(maxAccel * Math.abs(radius));
-
-                states.get(i).velocityMetersPerSecond = Math.min(maxVCurve, states.get(i).velocityMetersPerSecond);
+                state.velocityMetersPerSecond = Math.min(maxVel, state.velocityMetersPerSecond);
             }
         }
     }
 
-    private static void calculateVelocity(List<PathPlannerState> states, ArrayList<Waypoint> pathPoints, double maxAccel){
+    protected static void calculateVelocity(List<PathPlannerState> states, ArrayList<Waypoint> pathPoints, double maxAccel){
         if(pathPoints.get(0).velOverride == -1){
             states.get(0).velocityMetersPerSecond = 0;
         }
@@ -194,53 +200,58 @@ public class PathPlannerTrajectory2 extends Trajectory {
         }
     }
 
-    private static ArrayList<PathPlannerState> joinSplines(ArrayList<Waypoint> pathPoints, double maxVel, double step){
+    protected static ArrayList<PathPlannerState> joinSplines(ArrayList<Waypoint> pathPoints, double maxVel, double minStep){
         ArrayList<PathPlannerState> states = new ArrayList<>();
         int numSplines = pathPoints.size() - 1;
+        double position = 0;
+        double deltaPos = 0;
 
         for(int i = 0; i < numSplines; i++){
             Waypoint startPoint = pathPoints.get(i);
             Waypoint endPoint = pathPoints.get(i + 1);
+            BezierSegment segment = new BezierSegment(startPoint.anchorPoint, startPoint.nextControl, endPoint.prevControl, endPoint.anchorPoint);
+
+            double length = segment.getLength();
+            boolean lastSpline = i == numSplines - 1;
+
+            double deltaRot = endPoint.holonomicRotation.minus(startPoint.holonomicRotation).getDegrees();
+            if(deltaRot > 180){
+                deltaRot -= 360;
+            }else if(deltaRot < -180){
+                deltaRot += 360;
+            }
 
-            double endStep = (i == numSplines - 1) ? 1.0 : 1.0 - step;
-            for(double t = 0; t <= endStep; t += step){
-                Translation2d p = GeometryUtil2.cubicLerp(startPoint.anchorPoint, startPoint.nextControl, endPoint.prevControl, endPoint.anchorPoint, t);
+            double distance = 0;
+            while(true){
+                double t = segment.getParameter(distance);
+                boolean atEnd = distance >= length;
 
                 PathPlannerState state = new PathPlannerState();
-                state.poseMeters = new Pose2d(p, state.poseMeters.getRotation());
 
-                double deltaRot = endPoint.holonomicRotation.minus(startPoint.holonomicRotation).getDegrees();
-                if(deltaRot > 180){
-                    deltaRot -= 360;
-                }else if(deltaRot < -180){
-                    deltaRot += 360;
+                double heading = segment.getHeading(t);
+                if(Double.isNaN(heading)){
+                    // The control point sits on the anchor, so head towards a point just along the spline
+                    Translation2d ahead = segment.getPosition(atEnd ? t - 1E-3 : t + 1E-3).minus(segment.getPosition(t));
+                    heading = Math.atan2(ahead.getY(), ahead.getX()) + (atEnd ? Math.PI : 0);
                 }
+                state.poseMeters = new Pose2d(segment.getPosition(t), new Rotation2d(heading));
+
                 double holonomicRot = startPoint.holonomicRotation.getDegrees() + (t * deltaRot);
                 state.holonomicRotation = Rotation2d.fromDegrees(holonomicRot);
 
-                if(i > 0 || t > 0){
-                    PathPlannerState s1 = states.get(states.size() - 1);
-                    PathPlannerState s2 = state;
-                    double hypot = s1.poseMeters.getTranslation().getDistance(s2.poseMeters.getTranslation());
-                    state.positionMeters = s1.positionMeters + hypot;
-                    state.deltaPos = hypot;
-
-                    double heading = Math.toDegrees(Math.atan2(s1.poseMeters.getY() - s2.poseMeters.getY(), s1.poseMeters.getX() - s2.poseMeters.getX())) + 180;
-                    if(heading > 180){
-                        heading -= 360;
-                    }else if(heading < -180){
-                        heading += 360;
-                    }
-                    state.poseMeters = new Pose2d(state.poseMeters.getTranslation(), Rotation2d.fromDegrees(heading));
-
-                    if(i == 0 && t == step){
-                        states.get(states.size() - 1).poseMeters = new Pose2d(states.get(states.size() - 1).poseMeters.getTranslation(), Rotation2d.fromDegrees(heading));
-                    }
+                // The first sample of a later spline is the end of the previous one, one step after its last sample
+                if(i > 0 || distance > 0){
+                    state.deltaPos = deltaPos;
+                    position += deltaPos;
                 }
+                state.positionMeters = position;
+
+                double curvature = segment.getCurvature(t);
+                state.curveRadius = Double.isFinite(curvature) ? 1 / curvature : Double.POSITIVE_INFINITY;
 
-                if(t == 0.0){
+                if(distance == 0){
                     state.velocityMetersPerSecond = startPoint.velOverride;
-                }else if(t >= 1.0){
+                }else if(atEnd){
                     state.velocityMetersPerSecond = endPoint.velOverride;
                 }else {
                     state.velocityMetersPerSecond = maxVel;
@@ -249,28 +260,73 @@ public class PathPlannerTrajectory2 extends Trajectory {
                 if(state.velocityMetersPerSecond == -1) state.velocityMetersPerSecond = maxVel;
 
                 states.add(state);
+
+                if(atEnd) break;
+
+                double next = nextDistance(segment, distance, t, minStep);
+                deltaPos = next - distance;
+                distance = next;
+
+                // The end of each spline is the start of the next one, so it is only sampled for the last spline
+                if(distance >= length && !lastSpline) break;
             }
         }
         return states;
     }
 
-    private static double calculateRadius(PathPlannerState s0, PathPlannerState s1, PathPlannerState s2){
-        Translation2d a = s0.poseMeters.getTranslation();
-        Translation2d b = s1.poseMeters.getTranslation();
-        Translation2d c = s2.poseMeters.getTranslation();
+    /**
+     * Get the distance along a spline of the sample after a given one. The step is chosen from the
+     * curvature along it, so it is only short where the spline is tight, and the straight line
+     * between the samples stays within the position and heading tolerances. A short remainder at
+     * the end of the spline is split with the step before it.
+     * @param segment The spline
+     * @param distance The distance along the spline of the current sample
+     * @param t The parameter of the current sample
+     * @param minStep The smallest distance between samples
+     * @return The distance along the spline of the next sample, at most the length of the spline
+     */
+    private static double nextDistance(BezierSegment segment, double distance, double t, double minStep){
+        double length = segment.getLength();
+        double curvature = Math.abs(segment.getCurvature(t));
+        double step = calculateStepLength(curvature, minStep);
+
+        // The spline may tighten across the step, so check the curvature at its middle and far end
+        // too, shortening the step until it fits the tightest of them
+        for(int i = 0; i < STEP_ITERATIONS; i++){
+            double middle = Math.abs(segment.getCurvature(segment.getParameter(distance + (step / 2))));
+            double far = Math.abs(segment.getCurvature(segment.getParameter(distance + step)));
+            if(!(middle > curvature) && !(far > curvature)) break;
+
+            curvature = Math.max(curvature, Math.max(middle, far));
+            step = calculateStepLength(curvature, minStep);
+        }
+
+        double remaining = length - distance;
+        if(remaining <= step){
+            return length;
+        }else if(remaining - step < step / 2){
+            return distance + (remaining / 2);
+        }
+        return distance + step;
+    }
 
-        Translation2d vba = a.minus(b);
-        Translation2d vbc = c.minus(b);
-        double cross_z = (vba.getX() * vbc.getY()) - (vba.getY() * vbc.getX());
-        double sign = (cross_z < 0) ? 1 : -1;
+    /**
+     * Get the distance between samples on a spline, so that the straight line between consecutive
+     * samples stays within the position and heading tolerances
+     * @param curvature The curvature magnitude of the spline around the samples
+     * @param minStep The smallest distance between samples
+     * @return The distance between samples in meters
+     */
+    private static double calculateStepLength(double curvature, double minStep){
+        double stepLength = PathPlanner2.maxStepLength;
 
-        double ab = a.getDistance(b);
-        double bc = b.getDistance(c);
-        double ac = a.getDistance(c);
+        if(curvature > 1E-9){
+            // An arc of radius r deviates from a chord of length c by about c^2 / 8r
+            stepLength = Math.min(stepLength, Math.sqrt(8 * PathPlanner2.maxPositionError / curvature));
+            stepLength = Math.min(stepLength, PathPlanner2.maxHeadingError / curvature);
+        }
 
-        double p = (ab + bc + ac) / 2;
-        double area = Math.sqrt(Math.abs(p * (p - ab) * (p - bc) * (p - ac)));
-        return sign * (ab * bc * ac) / (4 * area);
+        return Math.max(stepLength, minStep);
     }
 
     public static class PathPlannerState extends State{
@@ -0,0 +1,166 @@
+package frc.robot.utils.PathPlanner;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.trajectory.Trajectory;
+
+import java.util.List;
+
+/**
+ * A trajectory stored as parallel arrays of primitives, which can be sampled without allocating
+ * any objects. This is the representation used while following a path; the {@link Trajectory}
+ * that it is built from remains available for WPILib code that needs it.
+ */
+public class PrimitiveTrajectory {
+    private final double[] time;
+    private final double[] x;
+    private final double[] y;
+    private final double[] heading;
+    private final double[] velocity;
+    private final double[] acceleration;
+    private final double[] curvature;
+
+    /**
+     * Create a primitive trajectory from the states of a trajectory
+     * @param trajectory The trajectory to copy
+     */
+    public PrimitiveTrajectory(Trajectory trajectory){
+        List<Trajectory.State> states = trajectory.getStates();
+        int size = states.size();
+
+        time = new double[size];
+        x = new double[size];
+        y = new double[size];
+        heading = new double[size];
+        velocity = new double[size];
+        acceleration = new double[size];
+        curvature = new double[size];
+
+        for(int i = 0; i < size; i++){
+            Trajectory.State state = states.get(i);
+
+            time[i] = state.timeSeconds;
+            x[i] = state.poseMeters.getX();
+            y[i] = state.poseMeters.getY();
+            heading[i] = state.poseMeters.getRotation().getRadians();
+            velocity[i] = state.velocityMetersPerSecond;
+            acceleration[i] = state.accelerationMetersPerSecondSq;
+            curvature[i] = state.curvatureRadPerMeter;
+        }
+    }
+
+    /**
+     * Get the number of states in the trajectory
+     * @return The number of states
+     */
+    public int size(){
+        return time.length;
+    }
+
+    /**
+     * Get the total time of the trajectory
+     * @return The time of the last state in the trajectory
+     */
+    public double getTotalTimeSeconds(){
+        return time[time.length - 1];
+    }
+
+    /**
+     * Sample the trajectory at a point in time, without allocating
+     * @param t The time to sample
+     * @param out The state to fill in with the sample
+     */
+    public void sampleInto(double t, MutableState out){
+        if(t <= time[0]){
+            copyInto(0, out);
+            return;
+        }
+        if(t >= getTotalTimeSeconds()){
+            copyInto(time.length - 1, out);
+            return;
+        }
+
+        interpolateInto(findIndex(t, 1, time.length - 1), t, out);
+    }
+
+    /**
+     * Binary search for the first state at or after a point in time
+     * @param t The time to search for
+     * @param low The lowest index to consider
+     * @param high The highest index to consider
+     * @return The index of the first state in the range whose time is not before the given time
+     */
+    protected int findIndex(double t, int low, int high){
+        while(low != high){
+            int mid = (low + high) / 2;
+            if(time[mid] < t){
+                low = mid + 1;
+            }else{
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Fill in a state by interpolating between a state and the one before it. This is the same
+     * interpolation used by {@link PathPlannerTrajectory2#sample(double)}.
+     * @param i The index of the state after the given time
+     * @param t The time to sample
+     * @param out The state to fill in with the sample
+     */
+    protected void interpolateInto(int i, double t, MutableState out){
+        double dt = time[i] - time[i - 1];
+
+        if(Math.abs(dt) < 1E-3){
+            copyInto(i, out);
+            return;
+        }
+
+        double f = (t - time[i - 1]) / dt;
+
+        out.timeSeconds = t;
+        out.x = GeometryUtil2.doubleLerp(x[i - 1], x[i], f);
+        out.y = GeometryUtil2.doubleLerp(y[i - 1], y[i], f);
+        out.heading = MathUtil.angleModulus(heading[i - 1] + (MathUtil.angleModulus(heading[i] - heading[i - 1]) * f));
+        out.velocity = GeometryUtil2.doubleLerp(velocity[i - 1], velocity[i], f);
+        out.acceleration = GeometryUtil2.doubleLerp(acceleration[i - 1], acceleration[i], f);
+        out.curvature = GeometryUtil2.doubleLerp(curvature[i - 1], curvature[i], f);
+    }
+
+    /**
+     * Fill in a state with one of the states of the trajectory
+     * @param i The index of the state to copy
+     * @param out The state to fill in
+     */
+    protected void copyInto(int i, MutableState out){
+        out.timeSeconds = time[i];
+        out.x = x[i];
+        out.y = y[i];
+        out.heading = heading[i];
+        out.velocity = velocity[i];
+        out.acceleration = acceleration[i];
+        out.curvature = curvature[i];
+    }
+
+    /**
+     * Get the time of a state in the trajectory
+     * @param i The index of the state
+     * @return The time of the state
+     */
+    protected double getTime(int i){
+        return time[i];
+    }
+
+    /**
+     * A reusable trajectory sample, filled in by {@link PrimitiveTrajectory#sampleInto}.
+     */
+    public static class MutableState {
+        public double timeSeconds;
+        public double x;
+        public double y;
+        public double heading;
+        public double velocity;
+        public double acceleration;
+        public double curvature;
+    }
+}
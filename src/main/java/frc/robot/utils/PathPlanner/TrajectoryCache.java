@@ -0,0 +1,145 @@
+package frc.robot.utils.PathPlanner;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.trajectory.Trajectory.State;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes precompiled trajectories as binary state tables, so that the robot does not
+ * have to parse and generate every path at startup.
+ *
+ * <p>Each file contains a header (magic, format version, hash of the path file and generation
+ * settings, state count) followed by one fixed size record per state. A cache file whose hash
+ * does not match the current path file is ignored.
+ */
+public class TrajectoryCache {
+    private static final int MAGIC = 0x50505432;
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4;
+    private static final int STATE_BYTES = 11 * 8;
+
+    /**
+     * Get the cache file for a path
+     * @param deployDir The deploy directory containing the pathplanner directory
+     * @param name The name of the path
+     * @return The cache file for the path
+     */
+    protected static File getFile(File deployDir, String name){
+        return new File(deployDir, "pathplanner/cache/" + name + ".bin");
+    }
+
+    /**
+     * Hash a path file along with the settings used to generate it
+     * @param pathFile The path file
+     * @param maxVel Max velocity of the path
+     * @param maxAccel Max acceleration of the path
+     * @param reversed Should the robot follow the path reversed
+     * @return The hash identifying the generated trajectory
+     * @throws IOException If the path file can not be read
+     */
+    protected static long hash(File pathFile, double maxVel, double maxAccel, boolean reversed) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(Files.readAllBytes(pathFile.toPath()));
+
+        ByteBuffer settings = ByteBuffer.allocate(8 * 6 + 4 + 4);
+        settings.putDouble(maxVel);
+        settings.putDouble(maxAccel);
+        settings.putDouble(PathPlanner2.minStepLength);
+        settings.putDouble(PathPlanner2.maxPositionError);
+        settings.putDouble(PathPlanner2.maxHeadingError);
+        settings.putDouble(PathPlanner2.maxStepLength);
+        settings.putInt(reversed ? 1 : 0);
+        settings.putInt(VERSION);
+        crc.update(settings.array());
+
+        return crc.getValue();
+    }
+
+    /**
+     * Read a trajectory from a cache file
+     * @param file The cache file
+     * @param hash The expected hash of the path file and settings
+     * @return The cached trajectory, or null if the cache file is missing or out of date
+     * @throws IOException If the cache file can not be read
+     */
+    protected static PathPlannerTrajectory2 read(File file, long hash) throws IOException {
+        if(!file.isFile()) return null;
+
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if(buffer.remaining() < HEADER_BYTES) return null;
+            if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != hash) return null;
+
+            int count = buffer.getInt();
+            if(count < 2 || buffer.remaining() != (long) count * STATE_BYTES) return null;
+
+            List<State> states = new ArrayList<>(count);
+            for(int i = 0; i < count; i++){
+                PathPlannerTrajectory2.PathPlannerState state = new PathPlannerTrajectory2.PathPlannerState();
+
+                state.timeSeconds = buffer.getDouble();
+                double x = buffer.getDouble();
+                double y = buffer.getDouble();
+                state.poseMeters = new Pose2d(x, y, new Rotation2d(buffer.getDouble()));
+                state.velocityMetersPerSecond = buffer.getDouble();
+                state.accelerationMetersPerSecondSq = buffer.getDouble();
+                state.curvatureRadPerMeter = buffer.getDouble();
+                state.positionMeters = buffer.getDouble();
+                state.angularVelocity = new Rotation2d(buffer.getDouble());
+                state.angularAcceleration = new Rotation2d(buffer.getDouble());
+                state.holonomicRotation = new Rotation2d(buffer.getDouble());
+
+                states.add(state);
+            }
+
+            return new PathPlannerTrajectory2(states);
+        }
+    }
+
+    /**
+     * Write a trajectory to a cache file
+     * @param file The cache file
+     * @param hash The hash of the path file and settings used to generate the trajectory
+     * @param trajectory The trajectory to write
+     * @throws IOException If the cache file can not be written
+     */
+    protected static void write(File file, long hash, PathPlannerTrajectory2 trajectory) throws IOException {
+        file.getParentFile().mkdirs();
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))){
+            int count = trajectory.getStates().size();
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(hash);
+            out.writeInt(count);
+
+            for(int i = 0; i < count; i++){
+                PathPlannerTrajectory2.PathPlannerState state = trajectory.getState(i);
+
+                out.writeDouble(state.timeSeconds);
+                out.writeDouble(state.poseMeters.getX());
+                out.writeDouble(state.poseMeters.getY());
+                out.writeDouble(state.poseMeters.getRotation().getRadians());
+                out.writeDouble(state.velocityMetersPerSecond);
+                out.writeDouble(state.accelerationMetersPerSecondSq);
+                out.writeDouble(state.curvatureRadPerMeter);
+                out.writeDouble(state.positionMeters);
+                out.writeDouble(state.angularVelocity.getRadians());
+                out.writeDouble(state.angularAcceleration.getRadians());
+                out.writeDouble(state.holonomicRotation.getRadians());
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package frc.robot.utils.PathPlanner;
+
+/**
+ * Samples a {@link PrimitiveTrajectory} with time moving forward, such as while following it.
+ * The cursor remembers where the last sample was and walks forward from there, which takes a
+ * step or two per loop instead of a binary search over the whole path. If the time jumps
+ * backwards or too far ahead it falls back to a binary search.
+ */
+public class TrajectoryCursor {
+    private static final int maxWalk = 8;
+
+    private final PrimitiveTrajectory trajectory;
+    private int index = 1;
+
+    /**
+     * Create a cursor at the start of a trajectory
+     * @param trajectory The trajectory to sample
+     */
+    public TrajectoryCursor(PrimitiveTrajectory trajectory){
+        this.trajectory = trajectory;
+    }
+
+    /**
+     * Move the cursor back to the start of the trajectory
+     */
+    public void reset(){
+        index = 1;
+    }
+
+    /**
+     * Get the trajectory sampled by this cursor
+     * @return The trajectory
+     */
+    public PrimitiveTrajectory getTrajectory(){
+        return trajectory;
+    }
+
+    /**
+     * Sample the trajectory at a point in time, without allocating. This gives the same result as
+     * {@link PrimitiveTrajectory#sampleInto}.
+     * @param t The time to sample
+     * @param out The state to fill in with the sample
+     */
+    public void sampleInto(double t, PrimitiveTrajectory.MutableState out){
+        int last = trajectory.size() - 1;
+
+        if(t <= trajectory.getTime(0)){
+            trajectory.copyInto(0, out);
+            return;
+        }
+        if(t >= trajectory.getTime(last)){
+            trajectory.copyInto(last, out);
+            return;
+        }
+
+        if(t <= trajectory.getTime(index - 1)){
+            index = trajectory.findIndex(t, 1, index - 1);
+        }else{
+            int steps = 0;
+            while(trajectory.getTime(index) < t){
+                if(++steps > maxWalk){
+                    index = trajectory.findIndex(t, index, last);
+                    break;
+                }
+                index++;
+            }
+        }
+
+        trajectory.interpolateInto(index, t, out);
+    }
+}
@@ -0,0 +1,504 @@
+// Copyright (c) 2022 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import static frc.robot.Constants.Drive.kGearing;
+import static frc.robot.Constants.Drive.kRotationsToMeters;
+import static frc.robot.Constants.SysId.kFreeSpeedMargin;
+import static frc.robot.Constants.SysId.kMedianWindow;
+import static frc.robot.Constants.SysId.kUnitsTolerance;
+import static frc.robot.Constants.SysId.kVelocityThreshold;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import edu.wpi.first.math.system.plant.DCMotor;
+
+/**
+ * Fits the feedforward gains of the drive train (kS, kV and kA) to the data
+ * recorded by the WPILib SysId tool, and writes them to the gains file that
+ * is loaded by {@link DriveGains}. This is run on the desktop by the
+ * fitDriveGains Gradle task.
+ *
+ * <p>The data file is streamed with {@link JsonReader}, keeping only the
+ * samples of the four drive train tests. Each sample of the quasistatic
+ * ("slow") and dynamic ("fast") tests gives one equation per side of the
+ * drive train:
+ *
+ * <pre>
+ * volts = kS * sign(velocity) + kV * velocity + kA * acceleration
+ * </pre>
+ *
+ * <p>which are solved by ordinary least squares, for each direction on its
+ * own (as a check that the two agree) and for both directions together (which
+ * are the gains that are written). This follows the same approach as SysId's
+ * own analysis, so the results should be close to those it reports.
+ *
+ * <p>The gains are only meaningful if the data was recorded in the same units
+ * that the robot code uses, so the gains file is only written if the data is
+ * in meters and its distance per wheel rotation (SysId's unitsPerRotation,
+ * which does not include the gearing) matches kRotationsToMeters times
+ * kGearing. The gains must also be physically possible: 12 volts must not
+ * drive the robot faster than the free speed of its motors. Otherwise the
+ * fit is still printed, but the gains file is left alone.
+ */
+public final class SysIdFit {
+  //
+  // The columns of each sample in the SysId data.
+  //
+  private static final int kTime = 0;
+  private static final int kLeftVolts = 1;
+  private static final int kRightVolts = 2;
+  private static final int kLeftVelocity = 5;
+  private static final int kRightVelocity = 6;
+  private static final int kColumns = 9;
+
+  private SysIdFit() {}
+
+  /**
+   * Fits the drive train gains to a SysId data file.
+   *
+   * @param args contains the path to the SysId data file and the path of the
+   *             gains file to write.
+   */
+  public static void main(String... args) throws IOException {
+    if(args.length != 2) {
+      System.err.println("Usage: SysIdFit <sysid data file> <gains file>");
+      System.exit(1);
+    }
+    File input = new File(args[0]);
+    File output = new File(args[1]);
+
+    Map<String, double[][]> tests = new HashMap<String, double[][]>();
+    DataUnits units = load(input, tests);
+
+    Regression forward = new Regression();
+    Regression backward = new Regression();
+    Regression combined = new Regression();
+    for(String type : new String[] { "slow", "fast" }) {
+      for(String direction : new String[] { "forward", "backward" }) {
+        String name = type + "-" + direction;
+        double[][] samples = tests.get(name);
+        if(samples == null) {
+          throw new IOException(input.getName() + ": missing the " + name +
+                                " test");
+        }
+
+        Regression regression =
+          direction.equals("forward") ? forward : backward;
+        boolean dynamic = type.equals("fast");
+        add(samples, kLeftVolts, kLeftVelocity, dynamic, regression,
+            combined);
+        add(samples, kRightVolts, kRightVelocity, dynamic, regression,
+            combined);
+      }
+    }
+
+    System.out.println("Fit of " + input.getName() + " (units: " +
+                       units.m_name + ", " + units.m_perRotation +
+                       " per rotation)");
+    System.out.println(String.format(Locale.ROOT, "%-10s %9s %9s %9s %7s %8s",
+                                     "Direction", "kS", "kV", "kA", "r2",
+                                     "Samples"));
+    print("forward", forward);
+    print("backward", backward);
+    print("combined", combined);
+
+    // Gains fit to data in other units would be off by the ratio of the
+    // units, so do not write them where the robot would load them. SysId
+    // records the distance per wheel rotation, and keeps the gearing
+    // separately.
+    double perRotation = units.m_perRotation / kGearing;
+    if(!units.m_name.equals("Meters") ||
+       !(Math.abs((perRotation / kRotationsToMeters) - 1) <=
+         kUnitsTolerance)) {
+      System.err.println(String.format(Locale.ROOT,
+                                       "%s was recorded in %s with %.5f " +
+                                       "per motor rotation, but the robot " +
+                                       "uses Meters with %.5f per motor " +
+                                       "rotation; not writing %s",
+                                       input.getName(), units.m_name,
+                                       perRotation, kRotationsToMeters,
+                                       output));
+      System.exit(1);
+    }
+
+    // Data whose distances were scaled wrongly when it was recorded has the
+    // right units but the wrong kV, which shows up as a top speed that the
+    // motors can not reach.
+    double freeSpeed = (DCMotor.getNEO(1).freeSpeedRadPerSec / (2 * Math.PI)) *
+                       kRotationsToMeters;
+    double topSpeed = 12 / combined.solve()[1];
+    if(!(topSpeed <= (freeSpeed * kFreeSpeedMargin))) {
+      System.err.println(String.format(Locale.ROOT,
+                                       "%s gives a top speed of %.2f m/s, " +
+                                       "but the motors' free speed is %.2f " +
+                                       "m/s; not writing %s",
+                                       input.getName(), topSpeed, freeSpeed,
+                                       output));
+      System.exit(1);
+    }
+
+    write(output, input.getName(), combined, forward, backward);
+    System.out.println("Wrote " + output);
+  }
+
+  /**
+   * Reads the drive train tests from a SysId data file.
+   *
+   * @param file is the SysId data file.
+   *
+   * @param tests receives the samples of each test, by name.
+   *
+   * @return the units of the data.
+   */
+  private static DataUnits load(File file, Map<String, double[][]> tests)
+      throws IOException {
+    DataUnits units = new DataUnits();
+    ArrayList<double[]> samples = new ArrayList<double[]>();
+
+    try(JsonReader reader =
+          new JsonReader(new BufferedReader(new FileReader(file)),
+                         file.getName())) {
+      reader.beginObject();
+      while(reader.hasNext()) {
+        String name = reader.nextName();
+        switch(name) {
+          case "slow-forward":
+          case "slow-backward":
+          case "fast-forward":
+          case "fast-backward":
+            samples.clear();
+            reader.beginArray();
+            while(reader.hasNext()) {
+              double[] sample = new double[kColumns];
+              reader.beginArray();
+              for(int i = 0; i < kColumns; i++) {
+                if(!reader.hasNext()) {
+                  throw reader.error("expected " + kColumns +
+                                     " values in each sample");
+                }
+                sample[i] = reader.nextDouble();
+              }
+              if(reader.hasNext()) {
+                throw reader.error("expected " + kColumns +
+                                   " values in each sample");
+              }
+              reader.endArray();
+              samples.add(sample);
+            }
+            reader.endArray();
+            tests.put(name, samples.toArray(new double[samples.size()][]));
+            break;
+
+          case "test":
+            String test = reader.nextString();
+            if(!test.equals("Drivetrain")) {
+              throw reader.error("expected drive train data, not " + test);
+            }
+            break;
+
+          case "units":
+            units.m_name = reader.nextString();
+            break;
+
+          case "unitsPerRotation":
+            units.m_perRotation = reader.nextDouble();
+            break;
+
+          default:
+            reader.skipValue();
+            break;
+        }
+      }
+      reader.endObject();
+    }
+
+    return units;
+  }
+
+  /**
+   * Adds the samples of one side of the drive train from one test to the
+   * fit.
+   *
+   * @param samples are the samples of the test.
+   *
+   * @param voltsColumn is the column of the voltage applied to the side.
+   *
+   * @param velocityColumn is the column of the velocity of the side.
+   *
+   * @param dynamic is <b>true</b> if this is a dynamic (voltage step) test.
+   *
+   * @param regressions are the fits to add the samples to.
+   */
+  private static void add(double[][] samples, int voltsColumn,
+                          int velocityColumn, boolean dynamic,
+                          Regression... regressions) {
+    int n = samples.length;
+    double[] velocity = median(samples, velocityColumn);
+
+    // Differentiate the velocity to find the acceleration, using the samples
+    // on either side. The first and last samples have no acceleration.
+    double[] acceleration = new double[n];
+    Arrays.fill(acceleration, Double.NaN);
+    for(int i = 1; i < (n - 1); i++) {
+      double dt = samples[i + 1][kTime] - samples[i - 1][kTime];
+      if(dt > 0) {
+        acceleration[i] = (velocity[i + 1] - velocity[i - 1]) / dt;
+      }
+    }
+
+    // The dynamic test applies a step in voltage to a stopped drive train,
+    // which takes a moment to respond; until it does the voltage is not
+    // accelerating anything. Start the dynamic test from the peak
+    // acceleration, just as SysId does.
+    int first = 0;
+    if(dynamic) {
+      for(int i = 0; i < n; i++) {
+        if(Math.abs(acceleration[i]) > Math.abs(acceleration[first]) ||
+           Double.isNaN(acceleration[first])) {
+          first = i;
+        }
+      }
+    }
+
+    for(int i = first; i < n; i++) {
+      if(Double.isNaN(acceleration[i]) ||
+         (Math.abs(velocity[i]) < kVelocityThreshold)) {
+        continue;
+      }
+      for(Regression regression : regressions) {
+        regression.add(Math.signum(velocity[i]), velocity[i],
+                       acceleration[i], samples[i][voltsColumn]);
+      }
+    }
+  }
+
+  /**
+   * Applies a median filter to one column of the samples. Samples near the
+   * ends of the test, which do not have a full window around them, are left
+   * as they are.
+   *
+   * @param samples are the samples of the test.
+   *
+   * @param column is the column to filter.
+   *
+   * @return the filtered column.
+   */
+  private static double[] median(double[][] samples, int column) {
+    int n = samples.length;
+    int half = kMedianWindow / 2;
+    double[] window = new double[kMedianWindow];
+    double[] filtered = new double[n];
+
+    for(int i = 0; i < n; i++) {
+      if((i < half) || (i >= (n - half))) {
+        filtered[i] = samples[i][column];
+        continue;
+      }
+      for(int j = 0; j < kMedianWindow; j++) {
+        window[j] = samples[i - half + j][column];
+      }
+      Arrays.sort(window);
+      filtered[i] = window[half];
+    }
+
+    return filtered;
+  }
+
+  /**
+   * Prints the result of one fit.
+   *
+   * @param name is the name of the fit.
+   *
+   * @param regression is the fit.
+   */
+  private static void print(String name, Regression regression) {
+    double[] gains = regression.solve();
+    System.out.println(String.format(Locale.ROOT,
+                                     "%-10s %9.5f %9.5f %9.5f %7.4f %8d",
+                                     name, gains[0], gains[1], gains[2],
+                                     regression.rSquared(gains),
+                                     regression.m_count));
+  }
+
+  /**
+   * Writes the gains file.
+   *
+   * @param file is the gains file to write.
+   *
+   * @param source is the name of the SysId data file.
+   *
+   * @param combined is the fit of both directions, which gives the gains.
+   *
+   * @param forward is the fit of the forward direction.
+   *
+   * @param backward is the fit of the backward direction.
+   */
+  private static void write(File file, String source, Regression combined,
+                            Regression forward, Regression backward)
+      throws IOException {
+    double[] gains = combined.solve();
+
+    File parent = file.getAbsoluteFile().getParentFile();
+    if(!parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Unable to create " + parent);
+    }
+
+    try(PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+      writer.println("{");
+      writer.println("  \"source\": \"" + source + "\",");
+      writer.println(String.format(Locale.ROOT, "  \"kS\": %.5f,", gains[0]));
+      writer.println(String.format(Locale.ROOT, "  \"kV\": %.5f,", gains[1]));
+      writer.println(String.format(Locale.ROOT, "  \"kA\": %.5f,", gains[2]));
+      writer.println(String.format(Locale.ROOT, "  \"r2\": %.4f,",
+                                   combined.rSquared(gains)));
+      writer.println("  \"forward\": " + describe(forward) + ",");
+      writer.println("  \"backward\": " + describe(backward));
+      writer.println("}");
+    }
+  }
+
+  /**
+   * Describes the result of a fit as a JSON object.
+   *
+   * @param regression is the fit.
+   *
+   * @return the JSON object.
+   */
+  private static String describe(Regression regression) {
+    double[] gains = regression.solve();
+    return String.format(Locale.ROOT,
+                         "{ \"kS\": %.5f, \"kV\": %.5f, \"kA\": %.5f, " +
+                         "\"r2\": %.4f }", gains[0], gains[1], gains[2],
+                         regression.rSquared(gains));
+  }
+
+  /**
+   * The units that the SysId data was recorded in.
+   */
+  private static final class DataUnits {
+    private String m_name = "unknown";
+    private double m_perRotation = Double.NaN;
+  }
+
+  /**
+   * An ordinary least squares fit of the voltage to the sign of the
+   * velocity, the velocity and the acceleration. Only the sums needed by the
+   * normal equations are kept, so the samples do not need to be stored.
+   */
+  private static final class Regression {
+    private final double[][] m_xx = new double[3][3];
+    private final double[] m_xy = new double[3];
+    private final double[] m_x = new double[3];
+    private double m_yy = 0;
+    private double m_y = 0;
+    private int m_count = 0;
+
+    /**
+     * Adds a sample to the fit.
+     *
+     * @param sign is the sign of the velocity.
+     *
+     * @param velocity is the velocity.
+     *
+     * @param acceleration is the acceleration.
+     *
+     * @param volts is the voltage that was applied.
+     */
+    private void add(double sign, double velocity, double acceleration,
+                     double volts) {
+      m_x[0] = sign;
+      m_x[1] = velocity;
+      m_x[2] = acceleration;
+      for(int i = 0; i < 3; i++) {
+        for(int j = 0; j < 3; j++) {
+          m_xx[i][j] += m_x[i] * m_x[j];
+        }
+        m_xy[i] += m_x[i] * volts;
+      }
+      m_yy += volts * volts;
+      m_y += volts;
+      m_count++;
+    }
+
+    /**
+     * Solves the normal equations, using Gaussian elimination with partial
+     * pivoting.
+     *
+     * @return the gains, as { kS, kV, kA }.
+     */
+    private double[] solve() {
+      double[][] a = new double[3][4];
+      for(int i = 0; i < 3; i++) {
+        System.arraycopy(m_xx[i], 0, a[i], 0, 3);
+        a[i][3] = m_xy[i];
+      }
+
+      for(int col = 0; col < 3; col++) {
+        int pivot = col;
+        for(int row = col + 1; row < 3; row++) {
+          if(Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+            pivot = row;
+          }
+        }
+        if(Math.abs(a[pivot][col]) < 1e-12) {
+          throw new IllegalStateException("not enough data to fit the gains");
+        }
+        double[] swap = a[col];
+        a[col] = a[pivot];
+        a[pivot] = swap;
+
+        for(int row = col + 1; row < 3; row++) {
+          double factor = a[row][col] / a[col][col];
+          for(int k = col; k < 4; k++) {
+            a[row][k] -= factor * a[col][k];
+          }
+        }
+      }
+
+      double[] gains = new double[3];
+      for(int row = 2; row >= 0; row--) {
+        double sum = a[row][3];
+        for(int k = row + 1; k < 3; k++) {
+          sum -= a[row][k] * gains[k];
+        }
+        gains[row] = sum / a[row][row];
+      }
+      return gains;
+    }
+
+    /**
+     * Computes the coefficient of determination of the fit, which is the
+     * fraction of the variation in the voltage that the gains explain.
+     *
+     * @param gains are the gains found by {@link #solve}.
+     *
+     * @return the coefficient of determination.
+     */
+    private double rSquared(double[] gains) {
+      // The sum of the squared residuals, expanded in terms of the sums.
+      double residual = m_yy;
+      for(int i = 0; i < 3; i++) {
+        residual -= 2 * gains[i] * m_xy[i];
+        for(int j = 0; j < 3; j++) {
+          residual += gains[i] * m_xx[i][j] * gains[j];
+        }
+      }
+      double total = m_yy - ((m_y * m_y) / m_count);
+      return 1 - (residual / total);
+    }
+  }
+}
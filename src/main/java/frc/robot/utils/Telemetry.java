@@ -0,0 +1,205 @@
+// Copyright (c) 2022 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import static frc.robot.Constants.Logging.kKeyframePeriod;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import edu.wpi.first.util.WPIUtilJNI;
+import edu.wpi.first.util.datalog.DoubleArrayLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+
+/**
+ * This class collects the detailed logging of the subsystems into frames, so
+ * that each subsystem writes a single data log record per loop instead of a
+ * record for every value.
+ *
+ * <p>A subsystem creates a {@link Frame} and declares its fields once, when
+ * it is constructed. Setting a field only stores the value into the frame's
+ * preallocated array; {@link #flush} then writes every frame that changed as
+ * a double array record, all sharing the same timestamp. The names of the
+ * fields are stored in the metadata of the frame's data log entry (as
+ * <code>{"fields":[...]}</code>), and boolean fields are stored as 0 or 1.
+ *
+ * <p>Since most values barely change for much of a match, a frame is only
+ * written when one of its fields has moved by more than the field's epsilon
+ * since the frame was last written, or when kKeyframePeriod has passed since
+ * the last write (so that a reader always has a recent value). Since this
+ * is decided for the frame as a whole, values that change at very different
+ * rates belong in separate frames; the subsystems put the bus voltages and
+ * currents of their motor controllers into a "power" frame of their own, so
+ * that they are not rewritten every time a position or output moves.
+ */
+public final class Telemetry {
+  //
+  // The frames that have been created.
+  //
+  private static final ArrayList<Frame> m_frames = new ArrayList<Frame>();
+
+  /**
+   * Creates a frame.
+   *
+   * @param name is the name of the data log entry that the frame is written
+   *             to.
+   *
+   * @return the new frame.
+   */
+  public static Frame frame(String name) {
+    Frame frame = new Frame(name);
+    m_frames.add(frame);
+    return frame;
+  }
+
+  /**
+   * Writes every frame that has changed since it was last written, or is
+   * due for a keyframe, to the data log. Should be called from
+   * robotPeriodic() after the command scheduler is run.
+   */
+  public static void flush() {
+    long timestamp = WPIUtilJNI.now();
+
+    for(int i = 0; i < m_frames.size(); i++) {
+      m_frames.get(i).write(timestamp);
+    }
+  }
+
+  /**
+   * A set of values that are logged together.
+   */
+  public static final class Frame {
+    private final String m_name;
+    private final ArrayList<String> m_fields = new ArrayList<String>();
+    private double[] m_values = new double[0];
+    private double[] m_written = new double[0];
+    private double[] m_epsilons = new double[0];
+    private DoubleArrayLogEntry m_entry = null;
+    private boolean m_set = false;
+    private boolean m_changed = false;
+    private long m_lastWrite = 0;
+
+    private Frame(String name) {
+      m_name = name;
+    }
+
+    /**
+     * Declares a field of the frame that is logged whenever its value
+     * changes. Fields can only be declared before the frame is first
+     * written.
+     *
+     * @param name is the name of the field.
+     *
+     * @return the new field.
+     */
+    public Field field(String name) {
+      return field(name, 0);
+    }
+
+    /**
+     * Declares a field of the frame. Fields can only be declared before the
+     * frame is first written.
+     *
+     * @param name is the name of the field.
+     *
+     * @param epsilon is the smallest change in the value of the field that
+     *                causes the frame to be written.
+     *
+     * @return the new field.
+     */
+    public Field field(String name, double epsilon) {
+      if(m_entry != null) {
+        throw new IllegalStateException("Telemetry field " + name +
+                                        " declared after " + m_name +
+                                        " was written");
+      }
+
+      int index = m_fields.size();
+      m_fields.add(name);
+      m_values = new double[index + 1];
+      m_written = new double[index + 1];
+      m_epsilons = Arrays.copyOf(m_epsilons, index + 1);
+      m_epsilons[index] = epsilon;
+      return new Field(this, index);
+    }
+
+    /**
+     * Writes the frame to the data log, if any of its fields have changed
+     * since it was last written or it is time for a keyframe.
+     *
+     * @param timestamp is the time of the record, in microseconds.
+     */
+    private void write(long timestamp) {
+      if(!m_set ||
+         (!m_changed && (m_entry != null) &&
+          ((timestamp - m_lastWrite) < (long)(kKeyframePeriod * 1e6)))) {
+        return;
+      }
+      m_changed = false;
+      m_lastWrite = timestamp;
+      System.arraycopy(m_values, 0, m_written, 0, m_values.length);
+
+      if(m_entry == null) {
+        StringBuilder metadata = new StringBuilder("{\"fields\":[");
+        for(int i = 0; i < m_fields.size(); i++) {
+          metadata.append((i == 0) ? "\"" : ",\"").append(m_fields.get(i)).
+            append('"');
+        }
+        metadata.append("]}");
+
+        m_entry = new DoubleArrayLogEntry(DataLogManager.getLog(), m_name,
+                                          metadata.toString());
+      }
+
+      m_entry.append(m_values, timestamp);
+    }
+  }
+
+  /**
+   * A single value within a frame.
+   */
+  public static final class Field {
+    private final Frame m_frame;
+    private final int m_index;
+
+    private Field(Frame frame, int index) {
+      m_frame = frame;
+      m_index = index;
+    }
+
+    /**
+     * Sets the value of the field. The frame is written by the next flush if
+     * the value has changed by more than the field's epsilon.
+     *
+     * @param value is the new value.
+     */
+    public void set(double value) {
+      Frame frame = m_frame;
+
+      frame.m_values[m_index] = value;
+      frame.m_set = true;
+
+      // A value that stays NaN (or infinite) is unchanged, but a change to or
+      // from NaN fails the epsilon test and so counts as a change.
+      double written = frame.m_written[m_index];
+      if((Double.compare(value, written) != 0) &&
+         !(Math.abs(value - written) <= frame.m_epsilons[m_index])) {
+        frame.m_changed = true;
+      }
+    }
+
+    /**
+     * Sets the value of the field. The frame is written by the next flush if
+     * the value has changed.
+     *
+     * @param value is the new value, logged as 1 for <b>true</b> and 0 for
+     *              <b>false</b>.
+     */
+    public void set(boolean value) {
+      set(value ? 1.0 : 0.0);
+    }
+  }
+}
@@ -5,11 +5,22 @@
 
 package frc.robot.utils;
 
-import java.util.HashMap;
+import static frc.robot.Constants.Auto.kTrajectoryCacheSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
-import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import frc.robot.utils.PathPlanner.PathPlanner2;
+import frc.robot.utils.PathPlanner.PathPlannerTrajectory2;
 
 /**
  * This class provides methods for managing trajectories.
@@ -31,10 +42,46 @@ public class Trajectories {
   public static final String backupTerminalToScore = "BackUpTerminalToScore";
 
   //
-  // A map of file names to the loaded trajectories.
+  // A map of file names to the settings used to generate each trajectory.
+  // An entry is replaced (never modified) when its limits are tuned from the
+  // dashboard.
   //
-  private static Map<String, Trajectory> m_trajectories =
-    new HashMap<String, Trajectory>();
+  private static final Map<String, Descriptor> m_descriptors =
+    new LinkedHashMap<String, Descriptor>();
+
+  //
+  // A map of file names to the generated trajectories, which complete as each
+  // one finishes loading. The map is kept in least recently used order, and
+  // the oldest trajectories are dropped once the map holds more than
+  // kTrajectoryCacheSize trajectories; a dropped trajectory is generated
+  // again the next time it is needed.
+  //
+  private static final Map<String, CompletableFuture<PathPlannerTrajectory2>> m_trajectories =
+    new LinkedHashMap<String, CompletableFuture<PathPlannerTrajectory2>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<PathPlannerTrajectory2>> eldest) {
+        return size() > kTrajectoryCacheSize;
+      }
+    };
+
+  //
+  // The pool used to load the trajectories in the background, sized to the
+  // two cores of the roboRIO.
+  //
+  private static final ForkJoinPool m_pool = new ForkJoinPool(2);
+
+  //
+  // The thread used to regenerate trajectories when their limits are changed
+  // from the dashboard. It runs at the lowest priority so that it only uses
+  // time that the robot loop does not need.
+  //
+  private static final ExecutorService m_regenerator =
+    Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "TrajectoryRegenerator");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    });
 
   //
   // The default maximum velocity for loaded trajectories.
@@ -47,27 +94,29 @@ public class Trajectories {
   private static final double m_maxAcceleration = 2;
 
   /**
-   * Loads the trajectories. Should be called at robot startup time.
+   * Registers the trajectories that can be loaded. Should be called at robot
+   * startup time. The trajectories themselves are not generated until they
+   * are needed, either by {@link #prefetch} or {@link #get}.
    */
-  public static void load() {
+  public static void register() {
     //Left Tarmac
-    load(autoB, m_maxVelocity, m_maxAcceleration);
-    load(straight, m_maxVelocity, m_maxAcceleration);
-    load(rightL, m_maxVelocity, m_maxAcceleration);
-    load(toStrategicCargo, m_maxVelocity, m_maxAcceleration, true);
-    load(backupStrategic, m_maxVelocity, m_maxAcceleration, true);
+    register(autoB, m_maxVelocity, m_maxAcceleration);
+    register(straight, m_maxVelocity, m_maxAcceleration);
+    register(rightL, m_maxVelocity, m_maxAcceleration);
+    register(toStrategicCargo, m_maxVelocity, m_maxAcceleration, true);
+    register(backupStrategic, m_maxVelocity, m_maxAcceleration, true);
 
     //Right Tarmac
-    load(rightR, m_maxVelocity, m_maxAcceleration);
-    load(toTerminal, 4, m_maxAcceleration);
-    load(terminalToScore, 4, m_maxAcceleration, true);
-    load(cargo2ToTerminal, m_maxVelocity, m_maxAcceleration);
-    load(backupTerminal, m_maxVelocity, m_maxAcceleration, true);
-    load(backupTerminalToScore, m_maxVelocity, m_maxAcceleration, true);
+    register(rightR, m_maxVelocity, m_maxAcceleration);
+    register(toTerminal, 4, m_maxAcceleration);
+    register(terminalToScore, 4, m_maxAcceleration, true);
+    register(cargo2ToTerminal, m_maxVelocity, m_maxAcceleration);
+    register(backupTerminal, m_maxVelocity, m_maxAcceleration, true);
+    register(backupTerminalToScore, m_maxVelocity, m_maxAcceleration, true);
   }
 
   /**
-   * Loads a trajectory.
+   * Registers a trajectory.
    *
    * @param name is the name of the file that contains the trajectory.
    *
@@ -79,14 +128,14 @@ public class Trajectories {
    * @param reversed is <b>true</b> if the robot should go backwards while
    *                 following the trajectory.
    */
-  private static void load(String name, double velocity, double acceleration,
-                           boolean reversed) {
-    m_trajectories.put(name, PathPlanner2.loadPath(name, velocity,
-                                                   acceleration, reversed));
+  private static void register(String name, double velocity,
+                               double acceleration, boolean reversed) {
+    m_descriptors.put(name,
+                      new Descriptor(name, velocity, acceleration, reversed));
   }
 
   /**
-   * Loads a trajectory.
+   * Registers a trajectory.
    *
    * @param name is the name of the file that contains the trajectory.
    *
@@ -95,18 +144,228 @@ public class Trajectories {
    * @param acceleration is the maximum acceleration while following the
    *                     trajectory.
    */
-  private static void load(String name, double velocity, double acceleration) {
-    load(name, velocity, acceleration, false);
+  private static void register(String name, double velocity,
+                               double acceleration) {
+    register(name, velocity, acceleration, false);
+  }
+
+  /**
+   * Puts the velocity and acceleration limits of each trajectory onto the
+   * dashboard, so that they can be tuned without redeploying. Should be
+   * called at robot startup time, after {@link #register}.
+   */
+  public static void publishLimits() {
+    for(Descriptor descriptor : m_descriptors.values()) {
+      SmartDashboard.putNumber(descriptor.velocityKey, descriptor.velocity);
+      SmartDashboard.putNumber(descriptor.accelerationKey,
+                               descriptor.acceleration);
+    }
+  }
+
+  /**
+   * Checks the dashboard for changes to the trajectory limits, regenerating
+   * any loaded trajectory whose limits have changed. The new trajectory is
+   * generated in the background and replaces the old one only once it is
+   * complete, so a command that is already following the old trajectory is
+   * not affected. Should be called periodically while the robot is disabled.
+   */
+  public static void updateLimits() {
+    for(Descriptor descriptor : m_descriptors.values()) {
+      double velocity = SmartDashboard.getNumber(descriptor.velocityKey,
+                                                 descriptor.velocity);
+      double acceleration =
+        SmartDashboard.getNumber(descriptor.accelerationKey,
+                                 descriptor.acceleration);
+
+      if((velocity != descriptor.velocity) ||
+         (acceleration != descriptor.acceleration)) {
+        regenerate(new Descriptor(descriptor.name, velocity, acceleration,
+                                  descriptor.reversed));
+      }
+    }
+  }
+
+  /**
+   * Replaces the settings of a trajectory, and regenerates it in the
+   * background if it has already been loaded.
+   *
+   * @param descriptor describes the new settings for the trajectory.
+   */
+  private static void regenerate(Descriptor descriptor) {
+    synchronized(m_trajectories) {
+      m_descriptors.put(descriptor.name, descriptor);
+
+      if(!m_trajectories.containsKey(descriptor.name)) {
+        return;
+      }
+    }
+
+    Log.log("Regenerating trajectory " + descriptor.name + " at " +
+            descriptor.velocity + " m/s, " + descriptor.acceleration +
+            " m/s/s");
+
+    m_regenerator.execute(() -> {
+      // Skip this request if the limits were changed again while it was
+      // waiting; the newer request will regenerate the trajectory.
+      synchronized(m_trajectories) {
+        if(m_descriptors.get(descriptor.name) != descriptor) {
+          return;
+        }
+      }
+
+      PathPlannerTrajectory2 trajectory = load(descriptor);
+      if(trajectory == null) {
+        return;
+      }
+
+      synchronized(m_trajectories) {
+        if(m_descriptors.get(descriptor.name) == descriptor) {
+          m_trajectories.put(descriptor.name,
+                             CompletableFuture.completedFuture(trajectory));
+        }
+      }
+    });
+  }
+
+  /**
+   * Starts generating trajectories in the background, so that they are ready
+   * by the time they are needed.
+   *
+   * @param names are the names of the files containing the trajectories.
+   */
+  public static void prefetch(String... names) {
+    for(String name : names) {
+      load(name);
+    }
   }
 
   /**
-   * Gets a trajectory.
+   * Gets a trajectory, generating it if it has not been loaded yet and
+   * waiting for it to finish if it is still being generated.
    *
    * @param name is the name of the file containing the trajectory.
    *
-   * @return the {@link Trajectory} loaded from the given file.
+   * @return the {@link PathPlannerTrajectory2} loaded from the given file.
    */
-  public static Trajectory get(String name) {
-    return m_trajectories.get(name);
+  public static PathPlannerTrajectory2 get(String name) {
+    CompletableFuture<PathPlannerTrajectory2> trajectory = load(name);
+
+    if(trajectory == null) {
+      return null;
+    }
+    return trajectory.join();
+  }
+
+  /**
+   * Finds a trajectory that is loaded or being loaded, starting to generate
+   * it in the background if it is not.
+   *
+   * @param name is the name of the file containing the trajectory.
+   *
+   * @return the pending trajectory, or <b>null</b> if there is no trajectory
+   *         with the given name.
+   */
+  private static CompletableFuture<PathPlannerTrajectory2> load(String name) {
+    synchronized(m_trajectories) {
+      CompletableFuture<PathPlannerTrajectory2> trajectory = m_trajectories.get(name);
+      Descriptor descriptor = m_descriptors.get(name);
+
+      if((trajectory == null) && (descriptor != null)) {
+        trajectory = CompletableFuture.supplyAsync(() -> load(descriptor),
+                                                   m_pool);
+        m_trajectories.put(name, trajectory);
+      }
+
+      return trajectory;
+    }
+  }
+
+  /**
+   * Loads a trajectory, recording the time taken to generate it in the data
+   * log.
+   *
+   * @param descriptor describes the trajectory to load.
+   *
+   * @return the loaded trajectory.
+   */
+  private static PathPlannerTrajectory2 load(Descriptor descriptor) {
+    long start = System.nanoTime();
+    PathPlannerTrajectory2 trajectory = PathPlanner2.loadPath(descriptor.name,
+                                                  descriptor.velocity,
+                                                  descriptor.acceleration,
+                                                  descriptor.reversed);
+    double time = (System.nanoTime() - start) / 1000000.0;
+
+    new DoubleLogEntry(DataLogManager.getLog(),
+                       "/trajectories/" + descriptor.name + "/loadTime").
+      append(time);
+    Log.log("Loaded trajectory " + descriptor.name + " in " +
+            String.format("%.1f", time) + " ms");
+
+    return trajectory;
+  }
+
+  /**
+   * Generates the precompiled trajectory cache for every trajectory, so that
+   * the robot does not need to generate them at startup. This is run on the
+   * desktop by the generateTrajectoryCache Gradle task.
+   *
+   * @param args contains the path to the deploy directory.
+   */
+  public static void main(String... args) throws IOException {
+    File deployDir = new File(args[0]);
+
+    register();
+    for(Descriptor descriptor : m_descriptors.values()) {
+      PathPlanner2.cachePath(deployDir, descriptor.name, descriptor.velocity,
+                             descriptor.acceleration, descriptor.reversed);
+      System.out.println("Cached trajectory " + descriptor.name);
+    }
+  }
+
+  /**
+   * The settings used to generate a trajectory.
+   */
+  private static final class Descriptor {
+    /**
+     * The name of the file that contains the trajectory.
+     */
+    final String name;
+
+    /**
+     * The maximum velocity while following the trajectory.
+     */
+    final double velocity;
+
+    /**
+     * The maximum acceleration while following the trajectory.
+     */
+    final double acceleration;
+
+    /**
+     * <b>true</b> if the robot should go backwards while following the
+     * trajectory.
+     */
+    final boolean reversed;
+
+    /**
+     * The dashboard key used to tune the maximum velocity.
+     */
+    final String velocityKey;
+
+    /**
+     * The dashboard key used to tune the maximum acceleration.
+     */
+    final String accelerationKey;
+
+    Descriptor(String name, double velocity, double acceleration,
+               boolean reversed) {
+      this.name = name;
+      this.velocity = velocity;
+      this.acceleration = acceleration;
+      this.reversed = reversed;
+      this.velocityKey = "Trajectories/" + name + "/Velocity";
+      this.accelerationKey = "Trajectories/" + name + "/Acceleration";
+    }
   }
 }
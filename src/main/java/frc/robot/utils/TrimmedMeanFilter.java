@@ -0,0 +1,308 @@
+// Copyright (c) 2022 FRC Team 2881 - The Lady Cans
+//
+// Open Source Software; you can modify and/or share it under the terms of BSD
+// license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.Random;
+
+/**
+ * A filter that computes the mean of a sliding window of samples, ignoring
+ * outliers. The first and third quartiles (q1 and q3) of the window are
+ * found, and the mean is taken of the samples between the quartiles plus any
+ * samples beyond them that are within 1.5 times the interquartile range
+ * (q3 - q1). With a window of seven samples, the quartiles are the second
+ * smallest and second largest samples.
+ *
+ * <p>The samples are kept sorted in a treap (a binary search tree that is
+ * balanced by giving each node a random priority), where every node also
+ * stores the number of samples and the sum of the samples beneath it. This
+ * makes adding a sample, finding a quartile, and summing a range of sorted
+ * samples O(log n), so large windows are cheap. The tree is stored in
+ * preallocated arrays, with the node for each sample being the slot of the
+ * sample in the window, so nothing is allocated as samples are added.
+ *
+ * <p>The filtered value is only computed when it is requested after a new
+ * sample has been added, so asking for it several times in a robot loop
+ * costs no more than asking once.
+ */
+public class TrimmedMeanFilter {
+  private final int m_window;
+  private final int m_nil;
+  private final double[] m_value;
+  private final int[] m_priority;
+  private final int[] m_left;
+  private final int[] m_right;
+  private final int[] m_size;
+  private final double[] m_sum;
+  private int m_root;
+  private int m_next = 0;
+  private int m_count = 0;
+  private int m_splitLeft;
+  private int m_splitRight;
+  private boolean m_valid = false;
+  private double m_mean;
+
+  /**
+   * Creates a new TrimmedMeanFilter.
+   *
+   * @param window is the number of samples that are filtered.
+   */
+  public TrimmedMeanFilter(int window) {
+    if(window < 1) {
+      throw new IllegalArgumentException("Filter window must be at least 1");
+    }
+
+    m_window = window;
+
+    // The extra node is the empty tree, which has a size and sum of zero so
+    // that it does not need to be handled specially.
+    m_nil = window;
+    m_value = new double[window + 1];
+    m_priority = new int[window + 1];
+    m_left = new int[window + 1];
+    m_right = new int[window + 1];
+    m_size = new int[window + 1];
+    m_sum = new double[window + 1];
+    m_root = m_nil;
+
+    Random random = new Random(window);
+    for(int i = 0; i < window; i++) {
+      m_priority[i] = random.nextInt();
+    }
+  }
+
+  /**
+   * Adds a sample to the window, replacing the oldest sample once the window
+   * is full.
+   *
+   * @param value is the new sample.
+   */
+  public void add(double value) {
+    int node = m_next;
+
+    if(m_count == m_window) {
+      m_root = erase(m_root, node);
+    } else {
+      m_count++;
+    }
+
+    m_value[node] = value;
+    m_left[node] = m_nil;
+    m_right[node] = m_nil;
+    update(node);
+    m_root = insert(m_root, node);
+
+    m_next = (m_next + 1) % m_window;
+    m_valid = false;
+  }
+
+  /**
+   * Replaces every sample in the window with a value.
+   *
+   * @param value is the value to fill the window with.
+   */
+  public void fill(double value) {
+    m_root = m_nil;
+    m_next = 0;
+    m_count = 0;
+    for(int i = 0; i < m_window; i++) {
+      add(value);
+    }
+  }
+
+  /**
+   * Gets the number of samples in the window.
+   *
+   * @return the number of samples.
+   */
+  public int size() {
+    return m_count;
+  }
+
+  /**
+   * Gets the mean of the samples in the window, ignoring outliers.
+   *
+   * @return the filtered value, or NaN if there are no samples.
+   */
+  public double get() {
+    if(m_valid) {
+      return m_mean;
+    }
+
+    int n = m_count;
+    if(n == 0) {
+      return Double.NaN;
+    }
+
+    int q1Index = (n - 1) / 4;
+    int q3Index = n - 1 - q1Index;
+    double q1 = m_value[select(q1Index)];
+    double q3 = m_value[select(q3Index)];
+    double iqr = q3 - q1;
+
+    // The samples between the quartiles are always used; those outside of
+    // them are used only if they are within the fences.
+    int first = Math.min(countBelow(q1 - (iqr * 1.5), true), q1Index);
+    int last = Math.max(countBelow(q3 + (iqr * 1.5), false) - 1, q3Index);
+
+    m_mean = (sumSmallest(last + 1) - sumSmallest(first)) /
+             (last - first + 1);
+    m_valid = true;
+    return m_mean;
+  }
+
+  /**
+   * Determines if one node sorts before another. Equal samples are ordered
+   * by their node, so that every node has a distinct position in the tree.
+   */
+  private boolean less(int a, int b) {
+    return (m_value[a] < m_value[b]) ||
+           ((m_value[a] == m_value[b]) && (a < b));
+  }
+
+  private void update(int node) {
+    m_size[node] = m_size[m_left[node]] + m_size[m_right[node]] + 1;
+    m_sum[node] = m_sum[m_left[node]] + m_sum[m_right[node]] +
+                  m_value[node];
+  }
+
+  private int insert(int tree, int node) {
+    if(tree == m_nil) {
+      return node;
+    }
+
+    if(m_priority[node] > m_priority[tree]) {
+      split(tree, node);
+      m_left[node] = m_splitLeft;
+      m_right[node] = m_splitRight;
+      update(node);
+      return node;
+    }
+
+    if(less(node, tree)) {
+      m_left[tree] = insert(m_left[tree], node);
+    } else {
+      m_right[tree] = insert(m_right[tree], node);
+    }
+    update(tree);
+    return tree;
+  }
+
+  /**
+   * Splits a tree into the nodes that sort before a node (m_splitLeft) and
+   * those that sort after it (m_splitRight).
+   */
+  private void split(int tree, int node) {
+    if(tree == m_nil) {
+      m_splitLeft = m_nil;
+      m_splitRight = m_nil;
+      return;
+    }
+
+    if(less(tree, node)) {
+      split(m_right[tree], node);
+      m_right[tree] = m_splitLeft;
+      update(tree);
+      m_splitLeft = tree;
+    } else {
+      split(m_left[tree], node);
+      m_left[tree] = m_splitRight;
+      update(tree);
+      m_splitRight = tree;
+    }
+  }
+
+  private int erase(int tree, int node) {
+    if(tree == node) {
+      return merge(m_left[tree], m_right[tree]);
+    }
+
+    if(less(node, tree)) {
+      m_left[tree] = erase(m_left[tree], node);
+    } else {
+      m_right[tree] = erase(m_right[tree], node);
+    }
+    update(tree);
+    return tree;
+  }
+
+  private int merge(int a, int b) {
+    if(a == m_nil) {
+      return b;
+    }
+    if(b == m_nil) {
+      return a;
+    }
+
+    if(m_priority[a] > m_priority[b]) {
+      m_right[a] = merge(m_right[a], b);
+      update(a);
+      return a;
+    }
+
+    m_left[b] = merge(a, m_left[b]);
+    update(b);
+    return b;
+  }
+
+  /**
+   * Finds the node holding the k'th smallest sample, counting from zero.
+   */
+  private int select(int k) {
+    int tree = m_root;
+
+    while(true) {
+      int leftSize = m_size[m_left[tree]];
+      if(k < leftSize) {
+        tree = m_left[tree];
+      } else if(k == leftSize) {
+        return tree;
+      } else {
+        k -= leftSize + 1;
+        tree = m_right[tree];
+      }
+    }
+  }
+
+  /**
+   * Counts the samples that are less than (or optionally equal to) a value.
+   */
+  private int countBelow(double value, boolean inclusive) {
+    int tree = m_root;
+    int count = 0;
+
+    while(tree != m_nil) {
+      if((m_value[tree] < value) || (inclusive && (m_value[tree] == value))) {
+        count += m_size[m_left[tree]] + 1;
+        tree = m_right[tree];
+      } else {
+        tree = m_left[tree];
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Sums the k smallest samples.
+   */
+  private double sumSmallest(int k) {
+    int tree = m_root;
+    double sum = 0;
+
+    while((tree != m_nil) && (k > 0)) {
+      int leftSize = m_size[m_left[tree]];
+      if(k <= leftSize) {
+        tree = m_left[tree];
+      } else {
+        sum += m_sum[m_left[tree]] + m_value[tree];
+        k -= leftSize + 1;
+        tree = m_right[tree];
+      }
+    }
+
+    return sum;
+  }
+}